@@ -0,0 +1,95 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.rest.ClientLoggingFilter;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request and response filtering of the {@link ClientLoggingFilter} with tracing off and with every call sampled.
+ * <p>The log records are not printed, so the benchmark measures the filter and the hand-off to the log writer.</p>
+ *
+ * @author Markus Pauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientLoggingFilterBenchmark {
+
+    @Param({"0", "1"})
+    private int sampleRate;
+
+    private Logger logger;
+    private ClientLoggingFilter filter;
+
+    @Setup
+    public void setUp() {
+        logger = Logger.getLogger(ClientLoggingFilter.class.getName());
+        logger.setUseParentHandlers(false);
+        filter = new ClientLoggingFilter(1024);
+        filter.configure(sampleRate, 0, false, "X-Correlation-ID");
+    }
+
+    @TearDown
+    public void tearDown() {
+        filter.close();
+        logger.setUseParentHandlers(true);
+    }
+
+    @State(Scope.Thread)
+    public static class Call {
+
+        private ClientRequestContext request;
+        private ClientResponseContext response;
+
+        @Setup
+        public void setUp() {
+            request = Contexts.request("GET", URI.create("http://127.0.0.1/customers/4711"));
+            response = Contexts.response(200);
+        }
+
+    }
+
+    @Benchmark
+    public Object filter(Call call) throws IOException {
+        call.request.getHeaders().clear();
+        filter.filter(call.request);
+        filter.filter(call.request, call.response);
+        return call.request.getHeaders();
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.config.Configuration;
+import de.beit.jee.config.PropertyNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Property and content lookups of the {@link Configuration} with a configuration file of 1000 Properties.
+ *
+ * @author Markus Pauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+    private static final int PROPERTIES = 1000;
+
+    private Container container;
+    private Configuration configuration;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder properties = new StringBuilder();
+        for (int i = 0; i < PROPERTIES; i++) {
+            properties.append("de.beit.example.Endpoint").append(i).append(".endpoint = http://127.0.0.1:8080/service").append(i).append('\n');
+            properties.append("de.beit.example.Endpoint").append(i).append(".pool.maxTotal = ").append(i).append('\n');
+        }
+        container = new Container(properties.toString());
+        StringBuilder content = new StringBuilder("[");
+        for (int i = 0; i < PROPERTIES; i++) {
+            content.append(i > 0 ? "," : "").append("{\"id\":").append(i).append('}');
+        }
+        Files.write(container.getDirectory().resolve("routes.json"), content.append(']').toString().getBytes(StandardCharsets.UTF_8));
+        configuration = container.get(Configuration.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        container.close();
+    }
+
+    @Benchmark
+    public String getProperty() throws PropertyNotFoundException {
+        return configuration.getProperty("de.beit.example.Endpoint500.endpoint");
+    }
+
+    @Benchmark
+    public String getMissingProperty() {
+        return configuration.getProperty("de.beit.example.Endpoint500.missing", null);
+    }
+
+    @Benchmark
+    public int getIntProperty() {
+        return configuration.getIntProperty("de.beit.example.Endpoint500.pool.maxTotal", 0);
+    }
+
+    @Benchmark
+    public String getContent() throws PropertyNotFoundException {
+        return configuration.getContent("routes");
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.config.Configuration;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+/**
+ * This Container wires the beans of the library for benchmarks outside of an application server.
+ * <p>Fields annotated with {@link Inject} get the single instance of their type, {@link PostConstruct}
+ * methods are called after injection and {@link PreDestroy} methods by {@link #close()}.</p>
+ *
+ * @author Markus Pauer
+ */
+final class Container {
+
+    private final Map<Class<?>, Object> beans = new LinkedHashMap<>();
+    private final Path directory;
+
+    /**
+     * Creates a Container whose Configuration reads the given Properties.
+     *
+     * @param properties - content of the configuration file
+     * @throws IOException if the configuration file could not be written
+     */
+    Container(String properties) throws IOException {
+        directory = Files.createTempDirectory("rest-client-benchmark");
+        Path configurationFile = directory.resolve("configuration.properties");
+        Path passwordFile = directory.resolve("password.properties");
+        Files.write(configurationFile, properties.getBytes(StandardCharsets.UTF_8));
+        Files.write(passwordFile, new byte[0]);
+        Configuration configuration = new Configuration();
+        setField(configuration, "configurationFilename", configurationFile.toString());
+        setField(configuration, "passwordFilename", passwordFile.toString());
+        invoke(configuration, PostConstruct.class);
+        beans.put(Configuration.class, configuration);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the bean of the type, it is created on first use.
+     *
+     * @param <T> bean class
+     * @param type - bean class
+     * @return bean
+     */
+    <T> T get(Class<T> type) {
+        Object bean = beans.get(type);
+        if (bean == null) {
+            try {
+                bean = type.newInstance();
+            } catch (InstantiationException | IllegalAccessException ex) {
+                throw new IllegalStateException("Bean " + type.getName() + " not created", ex);
+            }
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Inject.class)) {
+                        setField(bean, field.getName(), get(field.getType()));
+                    }
+                }
+            }
+            invoke(bean, PostConstruct.class);
+            beans.put(type, bean);
+        }
+        return type.cast(bean);
+    }
+
+    /**
+     * Destroy the beans in reverse order of their creation and delete the configuration files.
+     */
+    void close() {
+        List<Object> created = new ArrayList<>(beans.values());
+        for (int i = created.size() - 1; i >= 0; i--) {
+            invoke(created.get(i), PreDestroy.class);
+        }
+        beans.clear();
+        for (File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+        directory.toFile().delete();
+    }
+
+    private static void setField(Object bean, String name, Object value) {
+        for (Class<?> current = bean.getClass(); current != Object.class; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(bean, value);
+                return;
+            } catch (NoSuchFieldException ex) {
+                // look in the superclass
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        throw new IllegalStateException("No field " + name + " in " + bean.getClass().getName());
+    }
+
+    private static void invoke(Object bean, Class<? extends Annotation> annotation) {
+        for (Method method : bean.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(annotation)) {
+                method.setAccessible(true);
+                try {
+                    method.invoke(bean);
+                } catch (IllegalAccessException | InvocationTargetException ex) {
+                    throw new IllegalStateException(annotation.getSimpleName() + " of " + bean.getClass().getName() + " failed", ex);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Minimal request and response contexts to benchmark filters without an HTTP call.
+ * <p>They support headers, properties, method, URI, status and length, all other methods return null.</p>
+ *
+ * @author Markus Pauer
+ */
+final class Contexts {
+
+    private Contexts() {
+    }
+
+    static ClientRequestContext request(String method, URI uri) {
+        return (ClientRequestContext) Proxy.newProxyInstance(Contexts.class.getClassLoader(),
+                new Class<?>[]{ClientRequestContext.class}, new Handler(method, uri, 0));
+    }
+
+    static ClientResponseContext response(int status) {
+        return (ClientResponseContext) Proxy.newProxyInstance(Contexts.class.getClassLoader(),
+                new Class<?>[]{ClientResponseContext.class}, new Handler(null, null, status));
+    }
+
+    private static final class Handler implements InvocationHandler {
+
+        private final String method;
+        private final URI uri;
+        private final int status;
+        private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        private final Map<String, Object> properties = new HashMap<>();
+
+        Handler(String method, URI uri, int status) {
+            this.method = method;
+            this.uri = uri;
+            this.status = status;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method invoked, Object[] args) {
+            switch (invoked.getName()) {
+                case "getMethod":
+                    return method;
+                case "getUri":
+                    return uri;
+                case "getStatus":
+                    return status;
+                case "getLength":
+                    return -1;
+                case "getHeaders":
+                    return headers;
+                case "getHeaderString":
+                    Object value = headers.getFirst((String) args[0]);
+                    return value != null ? value.toString() : null;
+                case "getProperty":
+                    return properties.get((String) args[0]);
+                case "setProperty":
+                    properties.put((String) args[0], args[1]);
+                    return null;
+                case "removeProperty":
+                    properties.remove((String) args[0]);
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Context " + method + ' ' + uri;
+                default:
+                    return null;
+            }
+        }
+
+    }
+
+}
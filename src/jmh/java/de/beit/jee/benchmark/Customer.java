@@ -0,0 +1,54 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+/**
+ * The entity returned by the {@link CustomerEndpoint}.
+ *
+ * @author Markus Pauer
+ */
+public class Customer {
+
+    private String customerNr;
+    private String name;
+    private String city;
+
+    public String getCustomerNr() {
+        return customerNr;
+    }
+
+    public void setCustomerNr(String customerNr) {
+        this.customerNr = customerNr;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.rest.RestClient;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency distribution of complete calls through the {@link RestClient} against the
+ * {@link StubServer} on the loopback interface.
+ *
+ * @author Markus Pauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final byte[] BODY = "{\"customerNr\":\"4711\",\"name\":\"Max Mustermann\",\"city\":\"Berlin\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"0"})
+    private long latency;
+
+    @Param({"true", "false"})
+    private boolean metrics;
+
+    private StubServer server;
+    private Container container;
+    private RestClient restClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new StubServer(16, latency, BODY);
+        container = new Container(CustomerEndpoint.class.getName() + ".endpoint = " + server.getUrl() + "\n"
+                + CustomerEndpoint.class.getName() + ".pool.maxPerRoute = 16\n"
+                + "restclient.metrics.enabled = " + metrics + "\n");
+        restClient = container.get(RestClient.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        container.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public Customer getCustomer() {
+        return restClient.endpoint(CustomerEndpoint.class).getCustomer("4711");
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.model.User;
+import de.beit.jee.rest.RestClient;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Getting an endpoint from the {@link RestClient} and creating the clients and proxies behind it.
+ * <p>The cached lookups are the cost of every call, the creation is paid once per endpoint and
+ * again after its configuration changed. It is measured with the first lookup in a new
+ * {@link Container}. No HTTP call is made.</p>
+ *
+ * @author Markus Pauer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointBenchmark {
+
+    private static final String PROPERTIES = CustomerEndpoint.class.getName() + ".endpoint = http://127.0.0.1:8080/customer\n"
+            + "restclient.metrics.enabled = false\n";
+
+    private Container container;
+    private RestClient restClient;
+    private User user;
+
+    @Setup
+    public void setUp() throws IOException {
+        container = new Container(PROPERTIES);
+        restClient = container.get(RestClient.class);
+        user = UserBenchmark.createUser(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        container.close();
+    }
+
+    @Benchmark
+    public CustomerEndpoint endpoint() {
+        return restClient.endpoint(CustomerEndpoint.class);
+    }
+
+    @Benchmark
+    public CustomerEndpoint userEndpoint() {
+        return restClient.endpoint(CustomerEndpoint.class, user);
+    }
+
+    @Benchmark
+    public CustomerEndpoint createEndpoint(Empty empty) {
+        return empty.restClient.endpoint(CustomerEndpoint.class);
+    }
+
+    /**
+     * A new Container for every invocation, so the first lookup creates the client and the proxy.
+     */
+    @State(Scope.Thread)
+    public static class Empty {
+
+        private Container container;
+        private RestClient restClient;
+
+        @Setup(Level.Invocation)
+        public void setUp() throws IOException {
+            container = new Container(PROPERTIES);
+            restClient = container.get(RestClient.class);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            container.close();
+        }
+
+    }
+
+}
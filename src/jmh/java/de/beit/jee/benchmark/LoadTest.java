@@ -0,0 +1,278 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.rest.RestClient;
+import de.beit.jee.rest.metrics.LatencyHistogram;
+import de.beit.jee.rest.metrics.MetricsRegistry;
+import de.beit.jee.rest.metrics.PoolMetrics;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This load test drives calls through the {@link RestClient} against the {@link StubServer} and reports
+ * latency percentiles, throughput, allocation rate and connection counts.
+ * <p>The closed model runs a fixed number of threads that call one after another. The open model sends
+ * calls at a fixed rate regardless of how fast the responses come. Its latency is measured from the time
+ * a call was scheduled and not from the time it was sent, so a stalled client does not hide the calls it
+ * failed to send (coordinated omission). The service time without this waiting is reported as well.</p>
+ * <p>Settings are read from system properties:</p>
+ * <ul>
+ * <li>loadtest.model - closed or open (default closed)</li>
+ * <li>loadtest.threads - calling threads (default 16)</li>
+ * <li>loadtest.rate - calls per second of the open model (default 1000)</li>
+ * <li>loadtest.warmup - seconds before the measurement (default 5)</li>
+ * <li>loadtest.duration - seconds of the measurement (default 30)</li>
+ * <li>loadtest.latency - milliseconds the stub waits before each response (default 1)</li>
+ * <li>loadtest.errorRate - share of the calls the stub fails with 503 (default 0)</li>
+ * <li>loadtest.payload - size of the response body in bytes (default 256)</li>
+ * <li>loadtest.serverThreads - request threads of the stub (default 64)</li>
+ * <li>loadtest.config - file with additional client configuration, e.g. pool or cache settings</li>
+ * </ul>
+ *
+ * @author Markus Pauer
+ */
+public final class LoadTest {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long MONITOR_INTERVAL = 100;
+    private static final boolean COUNTS_ALLOCATION
+            = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean;
+
+    private final boolean open;
+    private final int threads;
+    private final int rate;
+    private final StubServer server;
+    private final Container container;
+    private final RestClient restClient;
+    private final MetricsRegistry metricsRegistry;
+
+    private LoadTest() throws IOException {
+        open = "open".equalsIgnoreCase(System.getProperty("loadtest.model", "closed"));
+        threads = Integer.getInteger("loadtest.threads", 16);
+        rate = Integer.getInteger("loadtest.rate", 1000);
+        server = new StubServer(Integer.getInteger("loadtest.serverThreads", 64),
+                Long.getLong("loadtest.latency", 1),
+                Double.parseDouble(System.getProperty("loadtest.errorRate", "0")),
+                createBody(Integer.getInteger("loadtest.payload", 256)));
+        String name = CustomerEndpoint.class.getName();
+        StringBuilder properties = new StringBuilder();
+        properties.append(name).append(".endpoint = ").append(server.getUrl()).append('\n');
+        properties.append(name).append(".pool.maxPerRoute = ").append(threads).append('\n');
+        String config = System.getProperty("loadtest.config");
+        if (config != null) {
+            properties.append(new String(Files.readAllBytes(Paths.get(config)), StandardCharsets.UTF_8));
+        }
+        container = new Container(properties.toString());
+        restClient = container.get(RestClient.class);
+        metricsRegistry = container.get(MetricsRegistry.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest loadTest = new LoadTest();
+        try {
+            loadTest.run(Long.getLong("loadtest.warmup", 5));
+            loadTest.run(Long.getLong("loadtest.duration", 30)).print(System.out);
+        } finally {
+            loadTest.close();
+        }
+    }
+
+    /**
+     * A JSON customer whose name is padded to the payload size.
+     */
+    private static byte[] createBody(int payload) {
+        String prefix = "{\"customerNr\":\"4711\",\"city\":\"Berlin\",\"name\":\"";
+        StringBuilder body = new StringBuilder(prefix);
+        while (body.length() < payload - 2) {
+            body.append('x');
+        }
+        return body.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Result run(long seconds) throws InterruptedException {
+        final Result result = new Result(seconds);
+        final long start = System.nanoTime();
+        final long end = start + seconds * NANOS_PER_SECOND;
+        final long interval = NANOS_PER_SECOND / Math.max(1, rate);
+        final AtomicLong ticket = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(threads);
+        server.resetConnections();
+        ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor();
+        monitor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                for (PoolMetrics pool : metricsRegistry.getPoolMetrics()) {
+                    result.sample(pool.getLeased(), pool.getPending());
+                }
+            }
+        }, 0, MONITOR_INTERVAL, TimeUnit.MILLISECONDS);
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long allocated = allocatedBytes();
+                    try {
+                        while (true) {
+                            long scheduled;
+                            if (open) {
+                                scheduled = start + ticket.getAndIncrement() * interval;
+                                if (scheduled >= end) {
+                                    break;
+                                }
+                                long wait;
+                                while ((wait = scheduled - System.nanoTime()) > 0) {
+                                    LockSupport.parkNanos(wait);
+                                }
+                            } else {
+                                scheduled = System.nanoTime();
+                                if (scheduled >= end) {
+                                    break;
+                                }
+                            }
+                            call(scheduled, result);
+                        }
+                    } finally {
+                        result.allocated.addAndGet(allocatedBytes() - allocated);
+                        finished.countDown();
+                    }
+                }
+            }, "loadtest-" + i);
+            thread.start();
+        }
+        finished.await();
+        result.nanos = System.nanoTime() - start;
+        monitor.shutdownNow();
+        result.connections = server.getConnections();
+        result.gcCount = gcCount() - gcCount;
+        result.gcMillis = gcMillis() - gcMillis;
+        return result;
+    }
+
+    private void call(long scheduled, Result result) {
+        long sent = System.nanoTime();
+        try {
+            restClient.endpoint(CustomerEndpoint.class).getCustomer("4711");
+        } catch (RuntimeException ex) {
+            result.errors.incrementAndGet();
+        }
+        long received = System.nanoTime();
+        result.responseTime.record(received - scheduled, TimeUnit.NANOSECONDS);
+        result.serviceTime.record(received - sent, TimeUnit.NANOSECONDS);
+    }
+
+    private void close() {
+        container.close();
+        server.stop();
+    }
+
+    /**
+     * @return bytes allocated by the current thread, 0 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        if (!COUNTS_ALLOCATION) {
+            return 0;
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private final class Result {
+
+        private final long seconds;
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong allocated = new AtomicLong();
+        private final AtomicInteger maxLeased = new AtomicInteger();
+        private final AtomicInteger maxPending = new AtomicInteger();
+        private long nanos;
+        private int connections;
+        private long gcCount;
+        private long gcMillis;
+
+        Result(long seconds) {
+            this.seconds = seconds;
+        }
+
+        /**
+         * Called by the single monitor thread only.
+         */
+        void sample(int leased, int pending) {
+            maxLeased.set(Math.max(maxLeased.get(), leased));
+            maxPending.set(Math.max(maxPending.get(), pending));
+        }
+
+        void print(PrintStream out) {
+            long calls = serviceTime.getCount();
+            double elapsed = (double) nanos / NANOS_PER_SECOND;
+            out.println(String.format(Locale.ENGLISH, "Model:        %s, %d threads%s, %d s",
+                    open ? "open" : "closed", threads, open ? ", " + rate + " calls/s" : "", seconds));
+            out.println(String.format(Locale.ENGLISH, "Calls:        %d, %d errors", calls, errors.get()));
+            out.println(String.format(Locale.ENGLISH, "Throughput:   %.1f calls/s", calls / elapsed));
+            out.println(latencies("Response ms: ", responseTime));
+            out.println(latencies("Service ms:  ", serviceTime));
+            if (COUNTS_ALLOCATION) {
+                out.println(String.format(Locale.ENGLISH, "Allocation:   %.1f MB/s, %d bytes/call",
+                        allocated.get() / elapsed / (1024 * 1024), calls == 0 ? 0 : allocated.get() / calls));
+            }
+            out.println(String.format(Locale.ENGLISH, "GC:           %d collections, %d ms", gcCount, gcMillis));
+            out.println(String.format(Locale.ENGLISH, "Connections:  %d used, %d leased at most, %d pending at most",
+                    connections, maxLeased.get(), maxPending.get()));
+        }
+
+        private String latencies(String label, LatencyHistogram histogram) {
+            return String.format(Locale.ENGLISH, "%s p50 %.3f  p99 %.3f  p999 %.3f  max %.3f  mean %.3f", label,
+                    histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                    histogram.getPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0, histogram.getMean() / 1000.0);
+        }
+
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This embedded HTTP server answers every request with the same JSON body after a fixed latency,
+ * so end-to-end benchmarks measure the client and not the backend.
+ * <p>A share of the requests can be answered with 503 Service Unavailable. The server counts the
+ * client connections that sent requests.</p>
+ *
+ * @author Markus Pauer
+ */
+final class StubServer {
+
+    static {
+        // without TCP_NODELAY the small responses wait for delayed ACKs of the client
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Set<InetSocketAddress> connections
+            = Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+
+    /**
+     * Starts a server on a free port of the loopback interface.
+     *
+     * @param threads - number of request threads
+     * @param latency - milliseconds before each response
+     * @param body - JSON body of each response
+     * @throws IOException if the server could not be started
+     */
+    StubServer(int threads, long latency, byte[] body) throws IOException {
+        this(threads, latency, 0, body);
+    }
+
+    /**
+     * Starts a server on a free port of the loopback interface.
+     *
+     * @param threads - number of request threads
+     * @param latency - milliseconds before each response
+     * @param errorRate - share of the requests between 0 and 1 that fail with 503
+     * @param body - JSON body of each response
+     * @throws IOException if the server could not be started
+     */
+    StubServer(int threads, final long latency, final double errorRate, final byte[] body) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                connections.add(exchange.getRemoteAddress());
+                try (InputStream in = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[4096];
+                    while (in.read(buffer) != -1) {
+                        // consume the request body, so the connection can be reused
+                    }
+                }
+                if (latency > 0) {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(latency);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    exchange.sendResponseHeaders(503, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @return base URL of the server
+     */
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return number of client connections that sent requests since the start or the last reset
+     */
+    int getConnections() {
+        return connections.size();
+    }
+
+    void resetConnections() {
+        connections.clear();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
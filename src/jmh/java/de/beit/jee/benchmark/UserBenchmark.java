@@ -0,0 +1,114 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.benchmark;
+
+import de.beit.jee.model.User;
+import de.beit.jee.rest.UserHeaderRequestFilter;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.ClientRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of the User header and the {@link UserHeaderRequestFilter}.
+ * <p>The uncached decoding cycles through more distinct headers than the decode cache holds.</p>
+ *
+ * @author Markus Pauer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserBenchmark {
+
+    private static final int DISTINCT_USERS = 4096;
+
+    private User user;
+    private User modifiedUser;
+    private String encodedUser;
+    private String[] encodedUsers;
+    private int next;
+    private long userId;
+    private UserHeaderRequestFilter filter;
+    private ClientRequestContext request;
+
+    @Setup
+    public void setUp() {
+        user = createUser(1);
+        modifiedUser = createUser(2);
+        encodedUser = user.encodeUser();
+        encodedUsers = new String[DISTINCT_USERS];
+        for (int i = 0; i < DISTINCT_USERS; i++) {
+            encodedUsers[i] = createUser(i).encodeUser();
+        }
+        filter = new UserHeaderRequestFilter(user);
+        request = Contexts.request("GET", URI.create("http://127.0.0.1/customers/4711"));
+    }
+
+    static User createUser(long userId) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setName("user" + userId);
+        user.addRole("customer-read");
+        user.addRole("order-write");
+        user.addCustomer("4711");
+        user.addCustomer("0815");
+        return user;
+    }
+
+    @Benchmark
+    public String encodeCached() {
+        return user.encodeUser();
+    }
+
+    @Benchmark
+    public String encodeModified() {
+        modifiedUser.setUserId(++userId);
+        return modifiedUser.encodeUser();
+    }
+
+    @Benchmark
+    public User decodeCached() {
+        return User.decodeUser(encodedUser);
+    }
+
+    @Benchmark
+    public User decodeUncached() {
+        next = (next + 1) % DISTINCT_USERS;
+        return User.decodeUser(encodedUsers[next]);
+    }
+
+    @Benchmark
+    public Object headerFilter() throws IOException {
+        request.getHeaders().clear();
+        filter.filter(request);
+        return request.getHeaders();
+    }
+
+}
@@ -16,30 +16,50 @@
  */
 package de.beit.jee.config;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.Calendar;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
 import javax.ejb.Schedule;
 import javax.enterprise.context.ApplicationScoped;
+import javax.json.Json;
+import javax.json.JsonStructure;
+import javax.json.stream.JsonParser;
 
 /**
  * This Configuration Class gives you access to the central Property-Files.
  * <p>To use this Configuration simply inject this Singleton into the Enterprise Java Bean.
  * If a property file has changed, it will be automatically reloaded.</p>
+ * <p>The files are checked every minute. With configuration.watch = true their directories are
+ * watched as well and changes are applied within milliseconds.</p>
+ * <p>A reload publishes a new immutable snapshot of all Properties, so reading a Property
+ * needs no lock and never sees a half-loaded file. Listeners can be notified about changed keys.</p>
  * 
  * @author Markus Pauer
  */
 @Singleton
 @ApplicationScoped
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class Configuration {
 
     private static final Logger LOGGER = Logger.getLogger(Configuration.class.getName());
@@ -50,52 +70,175 @@ public class Configuration {
     @Resource(lookup = "java:global/passwordFilename")
     private String passwordFilename;
     
-    private long timestamp = 0;
-    private long ptimestamp = 0;
-    private final Properties configuration;
-    private final Properties secrets;
-    private final Calendar calendar;
-    private String basePath;
+    private FileStamp configStamp;
+    private FileStamp passwordStamp;
+    private Map<String, String> configuration;
+    private Map<String, String> secrets;
+    private volatile Map<String, String> properties;
+    private volatile String basePath;
+    private boolean loaded;
+    private final List<Registration> listeners;
+    private final ContentCache contents;
+    private ConfigurationWatcher watcher;
 
     public Configuration() {
-        this.configuration = new Properties();
-        this.secrets = new Properties();
-        this.calendar = Calendar.getInstance();
+        this.configuration = Collections.emptyMap();
+        this.secrets = Collections.emptyMap();
+        this.properties = Collections.emptyMap();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.contents = new ContentCache();
     }
     
+    /**
+     * Reload the changed Property-Files. If configuration.watch is true, the directories of the
+     * Property-Files are watched as well, so changes are applied immediately instead of within a minute.
+     */
     @Schedule(hour = "*", minute = "*/1", second = "0", persistent = false)
     @PostConstruct
-    private final void init() {
-        calendar.setTimeInMillis(timestamp);
+    private void init() {
+        reload();
+        synchronized (this) {
+            if (watcher == null && getBooleanProperty("configuration.watch", false)) {
+                startWatcher(getLongProperty("configuration.watch.debounce", 100));
+            }
+        }
+    }
+
+    private void startWatcher(long debounce) {
+        Set<Path> directories = new HashSet<>();
+        directories.add(new File(configurationFilename).getAbsoluteFile().toPath().getParent());
+        directories.add(new File(passwordFilename).getAbsoluteFile().toPath().getParent());
+        try {
+            watcher = new ConfigurationWatcher(this, directories, debounce);
+            watcher.start();
+            LOGGER.log(Level.FINE, "Watching configuration directories {0}", directories);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Configuration directories not watched: {0}", ex.getLocalizedMessage());
+        }
+    }
+
+    @PreDestroy
+    private synchronized void destroy() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
+    synchronized void reload() {
         File configFile = new File(configurationFilename);
         basePath = configFile.getParent();
-        if (timestamp == 0 || timestamp < configFile.lastModified()) {
-            calendar.setTimeInMillis(configFile.lastModified());
-            LOGGER.log(Level.FINE, "Config-File has changed: {0} reloading", calendar.getTime());
-            try {
-                configuration.load(new FileReader(configFile));
-            } catch (FileNotFoundException ex) {
-                LOGGER.log(Level.SEVERE, "Config-File not found: {0}", ex.getLocalizedMessage());
-            } catch (IOException ex) {
-                LOGGER.log(Level.SEVERE, "Config-File not loaded: {0}", ex.getLocalizedMessage());
+        boolean changed = false;
+        FileStamp stamp = FileStamp.of(configFile);
+        if (!stamp.equals(configStamp)) {
+            LOGGER.log(Level.FINE, "Config-File has changed: {0} reloading", new Date(stamp.lastModified));
+            configStamp = stamp;
+            Map<String, String> loaded = load(configFile, "Config-File");
+            if (loaded != null) {
+                configuration = loaded;
+                changed = true;
             }
-            LOGGER.log(Level.FINE, "Config-File loaded: {0} entries found", configuration.size());
-            timestamp = configFile.lastModified();
         }
-        calendar.setTimeInMillis(ptimestamp);
         File passwordFile = new File(passwordFilename);
-        if (ptimestamp == 0 || ptimestamp < passwordFile.lastModified()) {
-            calendar.setTimeInMillis(passwordFile.lastModified());
-            LOGGER.log(Level.FINE, "Password-File has changed: {0} reloading", calendar.getTime());
-            try {
-                secrets.load(new FileReader(passwordFile));
-            } catch (FileNotFoundException ex) {
-                LOGGER.log(Level.SEVERE, "Password-File not found: {0}", ex.getLocalizedMessage());
-            } catch (IOException ex) {
-                LOGGER.log(Level.SEVERE, "Password-File not loaded: {0}", ex.getLocalizedMessage());
+        stamp = FileStamp.of(passwordFile);
+        if (!stamp.equals(passwordStamp)) {
+            LOGGER.log(Level.FINE, "Password-File has changed: {0} reloading", new Date(stamp.lastModified));
+            passwordStamp = stamp;
+            Map<String, String> loaded = load(passwordFile, "Password-File");
+            if (loaded != null) {
+                secrets = loaded;
+                changed = true;
+            }
+        }
+        if (changed) {
+            publish();
+        }
+        loaded = true;
+    }
+
+    private Map<String, String> load(File file, String description) {
+        Properties loaded = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            loaded.load(reader);
+        } catch (FileNotFoundException ex) {
+            LOGGER.log(Level.SEVERE, description + " not found: {0}", ex.getLocalizedMessage());
+            return null;
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, description + " not loaded: {0}", ex.getLocalizedMessage());
+            return null;
+        }
+        Map<String, String> entries = new HashMap<>();
+        for (String key : loaded.stringPropertyNames()) {
+            entries.put(key, loaded.getProperty(key));
+        }
+        LOGGER.log(Level.FINE, description + " loaded: {0} entries found", entries.size());
+        return entries;
+    }
+
+    /**
+     * Publish the merged snapshot of both files and notify the Listeners about the changed keys,
+     * except after the first load. If a file could not be loaded, its previous entries are kept.
+     */
+    private void publish() {
+        Map<String, String> merged = new HashMap<>(secrets);
+        merged.putAll(configuration);
+        Map<String, String> previous = properties;
+        properties = Collections.unmodifiableMap(merged);
+
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : merged.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!merged.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        if (!changed.isEmpty() && loaded) {
+            notifyListeners(changed);
+        }
+    }
+
+    private void notifyListeners(Set<String> changed) {
+        for (Registration registration : listeners) {
+            Set<String> keys = new HashSet<>();
+            for (String key : changed) {
+                if (key.startsWith(registration.prefix)) {
+                    keys.add(key);
+                }
+            }
+            if (!keys.isEmpty()) {
+                try {
+                    registration.listener.configurationChanged(Collections.unmodifiableSet(keys));
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.SEVERE, "Configuration-Listener failed: {0}", ex.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Register a Listener for changes of all keys with the given prefix.
+     * 
+     * @param prefix - prefix of the keys, an empty prefix matches all keys
+     * @param listener - Listener
+     */
+    public void addListener(String prefix, ConfigurationListener listener) {
+        listeners.add(new Registration(prefix, listener));
+    }
+
+    /**
+     * Remove all registrations of the Listener.
+     * 
+     * @param listener - Listener
+     */
+    public void removeListener(ConfigurationListener listener) {
+        for (Registration registration : listeners) {
+            if (registration.listener == listener) {
+                listeners.remove(registration);
             }
-            LOGGER.log(Level.FINE, "Password-File loaded: {0} entries found", configuration.size());
-            ptimestamp = passwordFile.lastModified();
         }
     }
     
@@ -107,39 +250,200 @@ public class Configuration {
      * @throws PropertyNotFoundException 
      */
     public String getProperty(String name) throws PropertyNotFoundException {
-        String property;
-        property = configuration.getProperty(name);
+        String property = properties.get(name);
         if (property == null) {
-            property = secrets.getProperty(name);
-            if (property == null) {
-                throw new PropertyNotFoundException(name, false);
-            }
+            throw new PropertyNotFoundException(name, false);
         }
         return property;
     }
     
+    /**
+     * Get the Property with the given key or the default value if it is not defined.
+     * 
+     * @param name - key of the Property
+     * @param defaultValue - value used if the Property is not defined
+     * @return value of the Property
+     */
+    public String getProperty(String name, String defaultValue) {
+        String property = properties.get(name);
+        return property != null ? property : defaultValue;
+    }
+    
+    /**
+     * Get the numeric Property with the given key or the default value if it is not defined.
+     * 
+     * @param name - key of the Property
+     * @param defaultValue - value used if the Property is not defined, not a number or out of the int range
+     * @return value of the Property
+     */
+    public int getIntProperty(String name, int defaultValue) {
+        long value = getLongProperty(name, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            LOGGER.log(Level.WARNING, "The Property {0} is out of the int range: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+        return (int) value;
+    }
+    
+    /**
+     * Get the numeric Property with the given key or the default value if it is not defined.
+     * 
+     * @param name - key of the Property
+     * @param defaultValue - value used if the Property is not defined or not a number
+     * @return value of the Property
+     */
+    public long getLongProperty(String name, long defaultValue) {
+        String property = getProperty(name, null);
+        if (property == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(property.trim());
+        } catch (NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "The Property {0} is not a number: {1}", new Object[]{name, property});
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * Get the decimal Property with the given key or the default value if it is not defined.
+     * 
+     * @param name - key of the Property
+     * @param defaultValue - value used if the Property is not defined or not a number
+     * @return value of the Property
+     */
+    public double getDoubleProperty(String name, double defaultValue) {
+        String property = getProperty(name, null);
+        if (property == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(property.trim());
+        } catch (NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "The Property {0} is not a number: {1}", new Object[]{name, property});
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * Get the boolean Property with the given key or the default value if it is not defined.
+     * 
+     * @param name - key of the Property
+     * @param defaultValue - value used if the Property is not defined
+     * @return value of the Property
+     */
+    public boolean getBooleanProperty(String name, boolean defaultValue) {
+        String property = getProperty(name, null);
+        if (property == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(property.trim());
+    }
+    
     /**
      * Read the Content of a JSON-based Property-File completely.
+     * <p>The Content is cached until the file is modified.</p>
      * 
      * @param name - name of the Property-File
      * @return JSON-structure
      * @throws PropertyNotFoundException 
      */
     public String getContent(String name) throws PropertyNotFoundException {
-        StringBuilder content = new StringBuilder();
+        ContentCache.Content content = content(name);
+        return content != null ? content.getText() : "";
+    }
+    
+    /**
+     * Get the parsed Content of a JSON-based Property-File.
+     * <p>The file is parsed only once per modification, all callers share the immutable structure.</p>
+     * 
+     * @param name - name of the Property-File
+     * @return JSON-structure
+     * @throws PropertyNotFoundException 
+     */
+    public JsonStructure getJson(String name) throws PropertyNotFoundException {
+        ContentCache.Content content = content(name);
+        if (content == null) {
+            throw new PropertyNotFoundException(name + ".json", true);
+        }
+        return content.getJson();
+    }
+    
+    /**
+     * Get a streaming parser over the Content of a JSON-based Property-File.
+     * 
+     * @param name - name of the Property-File
+     * @return JSON-parser, which has to be closed by the caller
+     * @throws PropertyNotFoundException 
+     */
+    public JsonParser getJsonParser(String name) throws PropertyNotFoundException {
+        return Json.createParser(new StringReader(getContent(name)));
+    }
+    
+    private ContentCache.Content content(String name) throws PropertyNotFoundException {
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(basePath + "/" + name + ".json"));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line);
-            }
+            return contents.get(new File(basePath, name + ".json"));
         } catch (FileNotFoundException ex) {
             LOGGER.log(Level.WARNING, "Fehler beim Holen der Datei: {0}", ex.getLocalizedMessage());
             throw new PropertyNotFoundException(name + ".json", true);
         } catch (IOException ex) {
-            Logger.getLogger(Configuration.class.getName()).log(Level.SEVERE, "Konnte die Datei {0} nicht lesen", name + ".json");
+            LOGGER.log(Level.SEVERE, "Konnte die Datei {0} nicht lesen", name + ".json");
         }
-        return content.toString();
+        return null;
+    }
+    
+    private static final class Registration {
+
+        private final String prefix;
+        private final ConfigurationListener listener;
+
+        Registration(String prefix, ConfigurationListener listener) {
+            this.prefix = prefix;
+            this.listener = listener;
+        }
+
+    }
+    
+    /**
+     * The identity of a file version. The real path is part of it, so a symlink that is switched
+     * to an older file is detected as a change as well.
+     */
+    private static final class FileStamp {
+
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        private FileStamp(String path, long lastModified, long length) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        static FileStamp of(File file) {
+            String path;
+            try {
+                path = file.getCanonicalPath();
+            } catch (IOException ex) {
+                path = file.getAbsolutePath();
+            }
+            return new FileStamp(path, file.lastModified(), file.length());
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode() ^ (int) lastModified;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) obj;
+            return lastModified == other.lastModified && length == other.length && path.equals(other.path);
+        }
+
     }
     
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.config;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This Watcher reloads the {@link Configuration} as soon as a file in the directories
+ * of the Property-Files changes.
+ * <p>Every change in the directories triggers a reload check, so files that are replaced by
+ * an atomic rename or a symlink swap (as with Kubernetes ConfigMaps) are detected as well.
+ * Bursts of changes are collected until the directories have been quiet for the debounce time.</p>
+ *
+ * @author Markus Pauer
+ */
+class ConfigurationWatcher implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigurationWatcher.class.getName());
+
+    private final Configuration configuration;
+    private final WatchService watchService;
+    private final long debounce;
+    private final Thread thread;
+
+    ConfigurationWatcher(Configuration configuration, Set<Path> directories, long debounce) throws IOException {
+        this.configuration = configuration;
+        this.debounce = debounce;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : directories) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        this.thread = new Thread(this, "configuration-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Configuration-Watcher not closed: {0}", ex.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                consume(watchService.take());
+                WatchKey next;
+                while ((next = watchService.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+                    consume(next);
+                }
+                configuration.reload();
+            }
+        } catch (ClosedWatchServiceException ex) {
+            LOGGER.log(Level.FINE, "Configuration-Watcher stopped");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume(WatchKey key) {
+        key.pollEvents();
+        if (!key.reset()) {
+            LOGGER.log(Level.WARNING, "Configuration directory {0} is no longer watched", key.watchable());
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.config;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.json.Json;
+import javax.json.JsonReader;
+import javax.json.JsonStructure;
+
+/**
+ * This Cache keeps the content of JSON-based Property-Files until the file is modified.
+ * <p>The content is decoded to a String anyway, so files are read into a heap buffer through their channel
+ * rather than memory-mapped.</p>
+ *
+ * @author Markus Pauer
+ */
+class ContentCache {
+
+    private final ConcurrentMap<String, Content> contents = new ConcurrentHashMap<>();
+
+    /**
+     * Get the current content of the file.
+     *
+     * @param file - JSON file
+     * @return cached content
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException if the file could not be read
+     */
+    Content get(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Content content = contents.get(file.getPath());
+        if (content != null && content.lastModified == lastModified && content.length == length) {
+            return content;
+        }
+        if (!file.isFile()) {
+            contents.remove(file.getPath());
+            throw new FileNotFoundException(file.getPath());
+        }
+        content = new Content(read(file), lastModified, length);
+        contents.put(file.getPath(), content);
+        return content;
+    }
+
+    private static String read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file.getPath());
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the buffer is full
+            }
+            buffer.flip();
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
+    static final class Content {
+
+        private final String text;
+        private final long lastModified;
+        private final long length;
+        private volatile JsonStructure json;
+
+        Content(String text, long lastModified, long length) {
+            this.text = text;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        /**
+         * Get the parsed content. It is parsed only once, the immutable structure is shared.
+         */
+        JsonStructure getJson() {
+            JsonStructure structure = json;
+            if (structure == null) {
+                try (JsonReader reader = Json.createReader(new StringReader(text))) {
+                    structure = reader.read();
+                }
+                json = structure;
+            }
+            return structure;
+        }
+
+    }
+
+}
@@ -19,12 +19,17 @@ package de.beit.jee.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import org.apache.commons.codec.binary.Base64;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -36,39 +41,91 @@ import javax.xml.bind.annotation.XmlRootElement;
 @XmlRootElement
 public class User implements Serializable {
 
+    private static final Logger LOGGER = Logger.getLogger(User.class.getName());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter WRITER = MAPPER.writerFor(User.class);
+    private static final ObjectReader READER = MAPPER.readerFor(User.class);
+
+    private static final int DECODE_CACHE_SIZE = 1024;
+    private static final ConcurrentMap<String, User> DECODED = new ConcurrentHashMap<>();
+
     private Long userId;
     private String name;
     private final List<String> roles;
     private final List<String> customer;
+    private transient volatile Encoded encoded;
 
     public User() {
         this.roles = new ArrayList<>();
         this.customer = new ArrayList<>();
     }
 
+    /**
+     * Encode this User for the User header.
+     * <p>The encoded form is cached until the User is modified.</p>
+     *
+     * @return Base64 encoded JSON
+     */
     @JsonIgnore
     public String encodeUser() {
+        Encoded current = encoded;
+        if (current != null && current.isValidFor(this)) {
+            return current.value;
+        }
         try {
-            byte[] encodedByteArray = Base64.encodeBase64(new ObjectMapper().writeValueAsString(this).getBytes("UTF-8"));
-            return new String(encodedByteArray, "UTF-8");
+            String value = new String(Base64.encodeBase64(WRITER.writeValueAsBytes(this)), StandardCharsets.UTF_8);
+            encoded = new Encoded(this, value);
+            return value;
         } catch (JsonProcessingException ex) {
-            Logger.getLogger(User.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (UnsupportedEncodingException ex) {
-            Logger.getLogger(User.class.getName()).log(Level.SEVERE, null, ex);
+            LOGGER.log(Level.SEVERE, null, ex);
         }
         return null;
     }
 
+    /**
+     * Decode a User from the User header.
+     * <p>Recently decoded headers are cached, each call returns a copy of the cached User.</p>
+     *
+     * @param encodedUser - Base64 encoded JSON
+     * @return User or null if the header is invalid
+     */
     public static User decodeUser(String encodedUser) {
-        try {
-            byte[] decodedBytes = Base64.decodeBase64(encodedUser);
-            return new ObjectMapper().readValue(new String(decodedBytes, "UTF-8"), User.class);
-        } catch (UnsupportedEncodingException ex) {
-            Logger.getLogger(User.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(User.class.getName()).log(Level.SEVERE, null, ex);
+        if (encodedUser == null) {
+            return null;
         }
-        return null;
+        User user = DECODED.get(encodedUser);
+        if (user == null) {
+            try {
+                user = READER.readValue(Base64.decodeBase64(encodedUser));
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+                return null;
+            }
+            user.encoded = new Encoded(user, encodedUser);
+            if (DECODED.size() >= DECODE_CACHE_SIZE) {
+                DECODED.clear();
+            }
+            DECODED.put(encodedUser, user);
+        }
+        return user.copy();
+    }
+
+    private User copy() {
+        User copy = new User();
+        copy.userId = userId;
+        copy.name = name;
+        copy.roles.addAll(roles);
+        copy.customer.addAll(customer);
+        Encoded current = encoded;
+        if (current != null && current.isValidFor(copy)) {
+            copy.encoded = current;
+        }
+        return copy;
+    }
+
+    private void modified() {
+        encoded = null;
     }
 
     public Long getUserId() {
@@ -77,6 +134,7 @@ public class User implements Serializable {
 
     public void setUserId(Long userId) {
         this.userId = userId;
+        modified();
     }
 
     public String getName() {
@@ -85,6 +143,7 @@ public class User implements Serializable {
 
     public void setName(String name) {
         this.name = name;
+        modified();
     }
 
     public List<String> getRoles() {
@@ -93,6 +152,7 @@ public class User implements Serializable {
 
     public void addRole(String role) {
         this.roles.add(role);
+        modified();
     }
 
     public boolean hasRole(String roleName) {
@@ -110,6 +170,7 @@ public class User implements Serializable {
 
     public void addCustomer(String customerNr) {
         this.customer.add(customerNr);
+        modified();
     }
 
     public boolean hasCustomer(String customerNr) {
@@ -121,6 +182,34 @@ public class User implements Serializable {
         return false;
     }
 
+    /**
+     * The encoded form of a User together with the state it was encoded from.
+     * <p>The state is compared as well, so modifications of the lists returned by
+     * {@link #getRoles()} and {@link #getCustomer()} are not missed.</p>
+     */
+    private static final class Encoded {
+
+        private final Long userId;
+        private final String name;
+        private final List<String> roles;
+        private final List<String> customer;
+        private final String value;
+
+        Encoded(User user, String value) {
+            this.userId = user.userId;
+            this.name = user.name;
+            this.roles = new ArrayList<>(user.roles);
+            this.customer = new ArrayList<>(user.customer);
+            this.value = value;
+        }
+
+        boolean isValidFor(User user) {
+            return Objects.equals(userId, user.userId) && Objects.equals(name, user.name)
+                    && roles.equals(user.roles) && customer.equals(user.customer);
+        }
+
+    }
+
     @Override
     public String toString() {
         return "User{" + "userId=" + userId + ", name=" + name + ", roles=" + roles + ", customer=" + customer + '}';
@@ -0,0 +1,55 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * An endpoint whose calls are executed by the shared {@link AsyncExecutor}.
+ *
+ * @author Markus Pauer
+ * @param <T> endpoint interface
+ */
+public class AsyncEndpoint<T> {
+
+    private final T endpoint;
+    private final AsyncExecutor executor;
+
+    AsyncEndpoint(T endpoint, AsyncExecutor executor) {
+        this.endpoint = endpoint;
+        this.executor = executor;
+    }
+
+    /**
+     * Execute the call asynchronously.
+     *
+     * @param <R> result of the call
+     * @param call - call of the endpoint
+     * @return result of the call
+     * @throws java.util.concurrent.RejectedExecutionException if the executor is saturated
+     */
+    public <R> Future<R> submit(final Call<T, R> call) {
+        return executor.submit(new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                return call.call(endpoint);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.Configuration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+/**
+ * This Executor runs the asynchronous calls of all endpoints on a bounded thread pool.
+ * <p>The pool is configured with the following Properties:</p>
+ * <ul>
+ * <li>restclient.async.threads - maximum number of threads (default 20)</li>
+ * <li>restclient.async.queueSize - maximum number of waiting calls (default 1000)</li>
+ * <li>restclient.hedge.threads - maximum number of threads for second attempts of hedged calls (default 10)</li>
+ * </ul>
+ * <p>Calls submitted to a saturated pool are rejected immediately. Second attempts of hedged calls run on
+ * a pool of their own without a queue, so they never wait behind or block the calls of the main pool.
+ * A single timer thread schedules delayed tasks such as the flushing of a {@link Batch}.</p>
+ *
+ * @author Markus Pauer
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AsyncExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncExecutor.class.getName());
+
+    private static final int DEFAULT_THREADS = 20;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_HEDGE_THREADS = 10;
+
+    @Inject
+    private Configuration configuration;
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor hedgeExecutor;
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @PostConstruct
+    public void init() {
+        int threads = configuration.getIntProperty("restclient.async.threads", DEFAULT_THREADS);
+        int queueSize = configuration.getIntProperty("restclient.async.queueSize", DEFAULT_QUEUE_SIZE);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new AsyncThreadFactory("rest-client-async-"));
+        executor.allowCoreThreadTimeOut(true);
+        int hedgeThreads = configuration.getIntProperty("restclient.hedge.threads", DEFAULT_HEDGE_THREADS);
+        hedgeExecutor = new ThreadPoolExecutor(hedgeThreads, hedgeThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new AsyncThreadFactory("rest-client-hedge-"));
+        hedgeExecutor.allowCoreThreadTimeOut(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, new AsyncThreadFactory("rest-client-timer-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        LOGGER.log(Level.FINE, "Async executor started with {0} threads", threads);
+    }
+
+    public <V> Future<V> submit(Callable<V> task) {
+        return executor.submit(task);
+    }
+
+    public ExecutorService getExecutorService() {
+        return executor;
+    }
+
+    /**
+     * @return executor of the second attempts of hedged calls, it rejects tasks while all its threads are busy
+     */
+    public ExecutorService getHedgeExecutorService() {
+        return hedgeExecutor;
+    }
+
+    /**
+     * @return the timer thread, its tasks must not block
+     */
+    public ScheduledExecutorService getScheduledExecutorService() {
+        return scheduler;
+    }
+
+    /**
+     * Run a short task after the delay on the timer thread.
+     *
+     * @param task - task that must not block
+     * @param delay - delay
+     * @param unit - time unit of the delay
+     * @return handle to cancel the task
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return scheduler.schedule(task, delay, unit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        hedgeExecutor.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class AsyncThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        AsyncThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
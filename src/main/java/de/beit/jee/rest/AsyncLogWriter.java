@@ -0,0 +1,131 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * This Writer hands log records to a daemon thread through a bounded ring buffer,
+ * so a slow log handler never delays the calling thread.
+ * <p>Callers claim a slot with a single compare-and-set. If the buffer is full the record is dropped
+ * and the number of dropped records is logged later.</p>
+ *
+ * @author Markus Pauer
+ */
+final class AsyncLogWriter implements Runnable {
+
+    private static final long IDLE_PARK_NANOS = 10 * 1000 * 1000;
+
+    private final Logger logger;
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+    private final Thread thread;
+
+    /**
+     * Creates and starts a Writer.
+     *
+     * @param logger - Logger that publishes the records
+     * @param capacity - size of the buffer, rounded up to a power of two
+     */
+    AsyncLogWriter(Logger logger, int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1) << 1);
+        this.logger = logger;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.thread = new Thread(this, "rest-client-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a record without blocking.
+     *
+     * @param record - log record
+     * @return false if the buffer was full and the record was dropped
+     */
+    boolean write(LogRecord record) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.set((int) t & mask, record);
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        while (running || head != tail.get()) {
+            int index = (int) head & mask;
+            LogRecord record = slots.get(index);
+            if (record == null) {
+                reportDropped();
+                idle = true;
+                if (head == tail.get() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            slots.set(index, null);
+            head = head + 1;
+            try {
+                logger.log(record);
+            } catch (RuntimeException ex) {
+                // a failing handler must not stop the writer
+            }
+        }
+        reportDropped();
+    }
+
+    private void reportDropped() {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            logger.log(Level.WARNING, "{0} log records dropped, the buffer was full", count);
+        }
+    }
+
+    /**
+     * Write the remaining records and stop the thread.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
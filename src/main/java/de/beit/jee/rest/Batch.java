@@ -0,0 +1,470 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+
+/**
+ * This Batch executes many calls of one endpoint with bounded parallelism and merges calls of methods
+ * with a {@link Bulk} counterpart into bulk calls.
+ * <pre>
+ * Batch&lt;CustomerResource&gt; batch = restClient.batch(CustomerResource.class);
+ * for (final String id : ids) {
+ *     customers.add(batch.submit("getCustomer", id, new Call&lt;CustomerResource, Customer&gt;() {
+ *         public Customer call(CustomerResource endpoint) {
+ *             return endpoint.getCustomer(id);
+ *         }
+ *     }));
+ * }
+ * </pre>
+ * <p>Calls submitted with a method that has a bulk counterpart are collected until the batch window has passed or the maximum
+ * size is reached, then one bulk call is sent for their distinct keys and its results are handed to the callers.
+ * All other calls are dispatched right away. At most parallelism calls of the Batch run at the same time.
+ * A call whose key is missing in the Map result of the bulk call fails with a NotFoundException, as the
+ * single call would.</p>
+ * <p>If the Property &lt;Interface&gt;.batch.record is true, a Call submitted without a method is first run
+ * against a recording endpoint to find its endpoint method. The recording stops the Call at its first endpoint
+ * call, so the code before that call runs twice and should have no side effects.</p>
+ *
+ * @author Markus Pauer
+ * @param <T> endpoint interface
+ */
+public class Batch<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(Batch.class.getName());
+
+    private static final RuntimeException RECORDED = new Recorded();
+
+    private final Class<T> type;
+    private final T endpoint;
+    private final AsyncExecutor executor;
+    private final BatchOptions options;
+    private final Object lock = new Object();
+    private Map<Method, List<Entry<?>>> pending = new HashMap<>();
+    private ScheduledFuture<?> timer;
+    private final Queue<Work> work = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    Batch(Class<T> type, T endpoint, AsyncExecutor executor, BatchOptions options) {
+        this.type = type;
+        this.endpoint = endpoint;
+        this.executor = executor;
+        this.options = options;
+    }
+
+    /**
+     * Submit a call of the endpoint.
+     * <p>The Call is dispatched on its own, unless the Property &lt;Interface&gt;.batch.record is true: then
+     * it is run up to its first endpoint call on the calling thread to record the method and its argument, and
+     * is run again when the call is executed.</p>
+     *
+     * @param <R> result of the call
+     * @param call - call of the endpoint
+     * @return pending result of the call
+     */
+    public <R> BatchCall<R> submit(Call<T, R> call) {
+        Entry<R> entry = new Entry<>(call);
+        Recorder recorder = options.isRecord() ? record(call) : null;
+        if (recorder == null || recorder.method == null || options.getBulkMethod(recorder.method) == null) {
+            execute(new SingleWork<>(entry));
+            return entry.result;
+        }
+        return submit(entry, recorder.method, recorder.args[0]);
+    }
+
+    /**
+     * Submit a call of an endpoint method with one parameter. The call is merged into a bulk call with the
+     * other calls of the method, and the Call gets the result for the key from the endpoint it is run with.
+     *
+     * @param <R> result of the call
+     * @param method - name of the endpoint method with a bulk counterpart the Call calls
+     * @param key - argument of the endpoint method
+     * @param call - call of the endpoint
+     * @return pending result of the call
+     * @throws IllegalArgumentException if the endpoint has no method with the name and a bulk counterpart
+     */
+    public <R> BatchCall<R> submit(String method, Object key, Call<T, R> call) {
+        Method batchedMethod = options.getBatchedMethod(method);
+        if (batchedMethod == null) {
+            throw new IllegalArgumentException(type.getName() + '.' + method + " has no bulk method");
+        }
+        return submit(new Entry<>(call), batchedMethod, key);
+    }
+
+    private <R> BatchCall<R> submit(Entry<R> entry, Method method, Object key) {
+        if (key == null) {
+            execute(new SingleWork<>(entry));
+            return entry.result;
+        }
+        entry.method = method;
+        entry.args = new Object[]{key};
+        Method bulkMethod = options.getBulkMethod(method);
+        List<Entry<?>> full = null;
+        synchronized (lock) {
+            List<Entry<?>> entries = pending.get(entry.method);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                pending.put(entry.method, entries);
+            }
+            entries.add(entry);
+            if (entries.size() >= options.getMaxSize()) {
+                full = pending.remove(entry.method);
+            } else if (timer == null) {
+                try {
+                    timer = executor.schedule(flushTask, options.getWindow(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ex) {
+                    full = pending.remove(entry.method);
+                }
+            }
+        }
+        if (full != null) {
+            execute(new BulkWork(entry.method, bulkMethod, full));
+        }
+        return entry.result;
+    }
+
+    /**
+     * Dispatch all collected calls without waiting for the end of the batch window.
+     */
+    public void flush() {
+        Map<Method, List<Entry<?>>> entries;
+        synchronized (lock) {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            entries = pending;
+            pending = new HashMap<>();
+        }
+        for (Map.Entry<Method, List<Entry<?>>> group : entries.entrySet()) {
+            execute(new BulkWork(group.getKey(), options.getBulkMethod(group.getKey()), group.getValue()));
+        }
+    }
+
+    private Recorder record(Call<T, ?> call) {
+        Recorder recorder = new Recorder();
+        try {
+            call.call(proxy(recorder));
+        } catch (Exception ex) {
+            // the recorder stops the call at the first endpoint method
+        }
+        return recorder;
+    }
+
+    private T proxy(InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private void execute(Work task) {
+        work.offer(task);
+        drain();
+    }
+
+    /**
+     * Start queued work while less than parallelism tasks are running.
+     */
+    private void drain() {
+        while (!work.isEmpty()) {
+            int current = running.get();
+            if (current >= options.getParallelism()) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Work task = work.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.getExecutorService().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.run();
+                        } finally {
+                            running.decrementAndGet();
+                            drain();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                running.decrementAndGet();
+                task.fail(ex);
+            }
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Exception {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UndeclaredThrowableException(cause);
+        }
+    }
+
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "Batch endpoint " + proxy.getClass().getInterfaces()[0].getName();
+        }
+    }
+
+    private final class Entry<R> {
+
+        private final Call<T, R> call;
+        private final BatchCall<R> result = new BatchCall<>();
+        private Method method;
+        private Object[] args;
+
+        Entry(Call<T, R> call) {
+            this.call = call;
+        }
+
+        void run(T target) {
+            try {
+                result.completed(call.call(target));
+            } catch (Exception ex) {
+                result.failed(ex);
+            }
+        }
+
+    }
+
+    private abstract static class Work implements Runnable {
+
+        abstract void fail(Exception ex);
+
+    }
+
+    private final class SingleWork<R> extends Work {
+
+        private final Entry<R> entry;
+
+        SingleWork(Entry<R> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            if (!entry.result.isDone()) {
+                entry.run(endpoint);
+            }
+        }
+
+        @Override
+        void fail(Exception ex) {
+            entry.result.failed(ex);
+        }
+
+    }
+
+    /**
+     * Sends one bulk call for the distinct keys of the entries, then replays every Call with its result.
+     */
+    private final class BulkWork extends Work {
+
+        private final Method method;
+        private final Method bulkMethod;
+        private final List<Entry<?>> entries;
+
+        BulkWork(Method method, Method bulkMethod, List<Entry<?>> entries) {
+            this.method = method;
+            this.bulkMethod = bulkMethod;
+            this.entries = entries;
+        }
+
+        @Override
+        public void run() {
+            Map<Object, List<Entry<?>>> keys = new LinkedHashMap<>();
+            for (Entry<?> entry : entries) {
+                if (!entry.result.isDone()) {
+                    List<Entry<?>> sameKey = keys.get(entry.args[0]);
+                    if (sameKey == null) {
+                        sameKey = new ArrayList<>(1);
+                        keys.put(entry.args[0], sameKey);
+                    }
+                    sameKey.add(entry);
+                }
+            }
+            if (keys.isEmpty()) {
+                return;
+            }
+            List<Object> keyList = new ArrayList<>(keys.keySet());
+            LOGGER.log(Level.FINE, "Bulk call {0}.{1} for {2} calls", new Object[]{type.getSimpleName(), bulkMethod.getName(), entries.size()});
+            Map<?, ?> results = null;
+            Exception failure = null;
+            try {
+                results = split(keyList, invoke(endpoint, bulkMethod, new Object[]{keyList}));
+            } catch (Exception ex) {
+                failure = ex;
+            }
+            for (Map.Entry<Object, List<Entry<?>>> key : keys.entrySet()) {
+                Object result = null;
+                Exception keyFailure = failure;
+                if (failure == null) {
+                    if (results.containsKey(key.getKey())) {
+                        result = results.get(key.getKey());
+                    } else {
+                        keyFailure = new NotFoundException(type.getSimpleName() + '.' + bulkMethod.getName()
+                                + " returned no result for " + key.getKey());
+                    }
+                }
+                for (Entry<?> entry : key.getValue()) {
+                    entry.run(proxy(new Replayer(method, entry.args, result, keyFailure)));
+                }
+            }
+        }
+
+        private Map<?, ?> split(List<Object> keyList, Object value) {
+            if (value == null) {
+                throw new ProcessingException(type.getSimpleName() + '.' + bulkMethod.getName() + " returned null for "
+                        + keyList.size() + " keys");
+            }
+            if (value instanceof Map) {
+                return (Map<?, ?>) value;
+            }
+            List<?> values = (List<?>) value;
+            if (values.size() != keyList.size()) {
+                throw new ProcessingException(type.getSimpleName() + '.' + bulkMethod.getName() + " returned "
+                        + values.size() + " results for " + keyList.size() + " keys");
+            }
+            Map<Object, Object> results = new HashMap<>();
+            for (int i = 0; i < keyList.size(); i++) {
+                results.put(keyList.get(i), values.get(i));
+            }
+            return results;
+        }
+
+        @Override
+        void fail(Exception ex) {
+            for (Entry<?> entry : entries) {
+                entry.result.failed(ex);
+            }
+        }
+
+    }
+
+    /**
+     * Records the first endpoint method called and stops the Call.
+     */
+    private static final class Recorder implements InvocationHandler {
+
+        private Method method;
+        private Object[] args;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if (this.method == null && args != null && args.length == 1) {
+                this.method = method;
+                this.args = args;
+            }
+            throw RECORDED;
+        }
+
+    }
+
+    /**
+     * Answers the recorded endpoint call from the bulk result and passes all other calls to the endpoint.
+     */
+    private final class Replayer implements InvocationHandler {
+
+        private final Method method;
+        private final Object[] args;
+        private final Object result;
+        private final Exception failure;
+        private boolean replayed;
+
+        Replayer(Method method, Object[] args, Object result, Exception failure) {
+            this.method = method;
+            this.args = args;
+            this.result = result;
+            this.failure = failure;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if (!replayed && this.method.equals(method) && Arrays.deepEquals(this.args, args)) {
+                replayed = true;
+                if (failure != null) {
+                    throw failure;
+                }
+                return result;
+            }
+            return Batch.invoke(endpoint, method, args);
+        }
+
+    }
+
+    private static final class Recorded extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Recorded() {
+            super("Endpoint call recorded", null, false, false);
+        }
+
+    }
+
+}
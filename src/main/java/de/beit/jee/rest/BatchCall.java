@@ -0,0 +1,101 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of a Call submitted to a {@link Batch}.
+ * <p>Cancelling only discards the result, a call that is already part of a dispatched bulk call is still sent.</p>
+ *
+ * @author Markus Pauer
+ * @param <R> result of the call
+ */
+public class BatchCall<R> implements Future<R> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile R result;
+    private volatile Throwable exception;
+    private volatile boolean cancelled;
+
+    BatchCall() {
+    }
+
+    boolean completed(R result) {
+        return complete(result, null, false);
+    }
+
+    boolean failed(Throwable exception) {
+        return complete(null, exception, false);
+    }
+
+    private synchronized boolean complete(R result, Throwable exception, boolean cancelled) {
+        if (done.getCount() == 0) {
+            return false;
+        }
+        this.result = result;
+        this.exception = exception;
+        this.cancelled = cancelled;
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, null, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public R get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getResult();
+    }
+
+    @Override
+    public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private R getResult() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return result;
+    }
+
+}
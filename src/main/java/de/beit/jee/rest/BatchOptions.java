@@ -0,0 +1,138 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.Configuration;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The batch settings and bulk methods of an endpoint interface.
+ *
+ * @author Markus Pauer
+ */
+final class BatchOptions {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchOptions.class.getName());
+
+    private static final long DEFAULT_WINDOW = 10;
+    private static final int DEFAULT_MAX_SIZE = 100;
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final long window;
+    private final int maxSize;
+    private final int parallelism;
+    private final boolean record;
+    private final Map<Method, Method> bulkMethods;
+
+    private BatchOptions(long window, int maxSize, int parallelism, boolean record, Map<Method, Method> bulkMethods) {
+        this.window = window;
+        this.maxSize = maxSize;
+        this.parallelism = parallelism;
+        this.record = record;
+        this.bulkMethods = bulkMethods;
+    }
+
+    static BatchOptions create(Class<?> type, Configuration configuration) {
+        String name = type.getName();
+        return new BatchOptions(Math.max(0, configuration.getLongProperty(name + ".batch.window", DEFAULT_WINDOW)),
+                Math.max(1, configuration.getIntProperty(name + ".batch.maxSize", DEFAULT_MAX_SIZE)),
+                Math.max(1, configuration.getIntProperty(name + ".batch.parallelism", DEFAULT_PARALLELISM)),
+                configuration.getBooleanProperty(name + ".batch.record", false),
+                findBulkMethods(type, configuration));
+    }
+
+    /**
+     * Map every method with a single parameter to its bulk method, named by the Property
+     * &lt;Interface&gt;.bulk.&lt;method&gt; or the {@link Bulk} annotation.
+     */
+    private static Map<Method, Method> findBulkMethods(Class<?> type, Configuration configuration) {
+        Map<Method, Method> bulkMethods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            Bulk bulk = method.getAnnotation(Bulk.class);
+            String bulkName = configuration.getProperty(type.getName() + ".bulk." + method.getName(), bulk != null ? bulk.value() : null);
+            if (bulkName == null || bulkName.isEmpty() || method.getParameterTypes().length != 1) {
+                continue;
+            }
+            Method bulkMethod = findBulkMethod(type, bulkName);
+            if (bulkMethod != null) {
+                bulkMethods.put(method, bulkMethod);
+            } else {
+                LOGGER.log(Level.WARNING, "{0}.{1} is no bulk method: it must take a List and return a List or Map",
+                        new Object[]{type.getName(), bulkName});
+            }
+        }
+        return bulkMethods.isEmpty() ? Collections.<Method, Method>emptyMap() : bulkMethods;
+    }
+
+    private static Method findBulkMethod(Class<?> type, String name) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == 1
+                    && method.getParameterTypes()[0].isAssignableFrom(List.class)
+                    && (List.class.isAssignableFrom(method.getReturnType()) || Map.class.isAssignableFrom(method.getReturnType()))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    long getWindow() {
+        return window;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return true if Calls submitted without a method are recorded to find their bulk method
+     */
+    boolean isRecord() {
+        return record && !bulkMethods.isEmpty();
+    }
+
+    /**
+     * @param name - name of an endpoint method
+     * @return method with the name and a bulk counterpart or null
+     */
+    Method getBatchedMethod(String name) {
+        for (Method method : bulkMethods.keySet()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param method - endpoint method
+     * @return bulk counterpart of the method or null
+     */
+    Method getBulkMethod(Method method) {
+        return bulkMethods.get(method);
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the bulk counterpart of an endpoint method with a single key parameter.
+ * <pre>
+ * &#64;GET
+ * &#64;Path("{id}")
+ * &#64;Bulk("getCustomers")
+ * Customer getCustomer(&#64;PathParam("id") String id);
+ *
+ * &#64;POST
+ * &#64;Path("query")
+ * List&lt;Customer&gt; getCustomers(List&lt;String&gt; ids);
+ * </pre>
+ * <p>The bulk method takes a List of keys and returns either a List with one result per key in the same order
+ * or a Map from key to result. A {@link Batch} merges calls of the annotated method into bulk calls.
+ * The Property &lt;Interface&gt;.bulk.&lt;method&gt; overrides the annotation.</p>
+ *
+ * @author Markus Pauer
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Bulk {
+
+    /**
+     * @return name of the bulk method in the same interface
+     */
+    String value();
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+/**
+ * A Call of an endpoint that can be executed asynchronously.
+ * <pre>
+ * Future&lt;Customer&gt; customer = restClient.async(CustomerResource.class).submit(new Call&lt;CustomerResource, Customer&gt;() {
+ *     public Customer call(CustomerResource endpoint) {
+ *         return endpoint.getCustomer(customerNr);
+ *     }
+ * });
+ * </pre>
+ *
+ * @author Markus Pauer
+ * @param <T> endpoint interface
+ * @param <R> result of the call
+ */
+public interface Call<T, R> {
+
+    R call(T endpoint) throws Exception;
+
+}
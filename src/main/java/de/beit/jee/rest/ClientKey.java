@@ -0,0 +1,64 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+/**
+ * Key of a shared client: the endpoint interface and its security mode.
+ *
+ * @author Markus Pauer
+ */
+final class ClientKey {
+
+    private final Class<?> type;
+    private final boolean secured;
+
+    ClientKey(Class<?> type, boolean secured) {
+        this.type = type;
+        this.secured = secured;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    boolean isSecured() {
+        return secured;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + (secured ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ClientKey)) {
+            return false;
+        }
+        ClientKey other = (ClientKey) obj;
+        return secured == other.secured && type.equals(other.type);
+    }
+
+    @Override
+    public String toString() {
+        return "ClientKey{" + "type=" + type.getName() + ", secured=" + secured + '}';
+    }
+
+}
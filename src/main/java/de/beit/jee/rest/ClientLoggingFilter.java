@@ -16,31 +16,194 @@
  */
 package de.beit.jee.rest;
 
-import de.beit.jee.config.Configuration;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import javax.ws.rs.client.ClientRequestContext;
 import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.ClientResponseContext;
 import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
 
 /**
+ * This Filter logs requests and responses and traces selected calls.
+ * <p>With level FINE every request and response is logged. Besides, calls are traced at level INFO
+ * with method, URI, status, duration, body sizes and correlation ID if they are sampled (one in sampleRate),
+ * slower than slowThreshold milliseconds or, if logFailed is set, answered with an error status.
+ * While tracing is active every request carries a correlation ID header, an existing one is kept.</p>
+ * <p>All records are written by an {@link AsyncLogWriter}. If neither FINE is enabled nor tracing
+ * is configured, the filter returns at once without allocating anything.</p>
  *
  * @author Markus Pauer
  */
-public class ClientLoggingFilter implements ClientRequestFilter, ClientResponseFilter {
-    
-    private static final Logger LOGGER = Logger.getLogger(Configuration.class.getName());
+public class ClientLoggingFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientLoggingFilter.class.getName());
+
+    private static final String TRACE = ClientLoggingFilter.class.getName() + ".trace";
+    private static final String ID_PREFIX = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36) + '-';
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final AsyncLogWriter writer;
+    private volatile Settings settings = new Settings(0, 0, false, "X-Correlation-ID");
+
+    /**
+     * Creates a Filter.
+     *
+     * @param bufferSize - number of log records that can wait for the writer
+     */
+    public ClientLoggingFilter(int bufferSize) {
+        this.writer = new AsyncLogWriter(LOGGER, bufferSize);
+    }
+
+    /**
+     * Change the tracing of calls.
+     *
+     * @param sampleRate - trace one in sampleRate calls, 0 traces no sampled calls
+     * @param slowThreshold - trace calls slower than this number of milliseconds, 0 traces no slow calls
+     * @param logFailed - trace calls answered with status 400 or higher
+     * @param correlationHeader - name of the correlation ID header
+     */
+    public void configure(int sampleRate, long slowThreshold, boolean logFailed, String correlationHeader) {
+        settings = new Settings(sampleRate, slowThreshold, logFailed, correlationHeader);
+    }
 
     @Override
     public void filter(ClientRequestContext requestContext) throws IOException {
-        Logger.getLogger(ClientLoggingFilter.class.getName()).log(Level.FINE, "ClientRequest {0} mit Methode {1}", new Object[]{requestContext.getUri(), requestContext.getMethod()});
+        Settings current = settings;
+        boolean fine = LOGGER.isLoggable(Level.FINE);
+        if (!fine && !(current.tracing && LOGGER.isLoggable(Level.INFO))) {
+            return;
+        }
+        String id = requestContext.getHeaderString(current.correlationHeader);
+        if (id == null) {
+            id = ID_PREFIX + Long.toString(IDS.incrementAndGet(), 36);
+            requestContext.getHeaders().putSingle(current.correlationHeader, id);
+        }
+        boolean sampled = current.sampleRate > 0 && ThreadLocalRandom.current().nextInt(current.sampleRate) == 0;
+        requestContext.setProperty(TRACE, new Trace(id, sampled, System.nanoTime()));
+        if (fine) {
+            log(Level.FINE, "ClientRequest {0} mit Methode {1} [{2}]", requestContext.getUri(), requestContext.getMethod(), id);
+        }
+    }
+
+    /**
+     * Count the bytes of the request body of traced calls.
+     */
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object property = context.getProperty(TRACE);
+        if (property == null) {
+            context.proceed();
+            return;
+        }
+        CountingOutputStream out = new CountingOutputStream(context.getOutputStream());
+        context.setOutputStream(out);
+        try {
+            context.proceed();
+        } finally {
+            ((Trace) property).requestBytes = out.count;
+        }
     }
 
     @Override
     public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
-        Logger.getLogger(ClientLoggingFilter.class.getName()).log(Level.FINE, "ClientResponse {0}", responseContext.getStatus());
+        Object property = requestContext.getProperty(TRACE);
+        if (property == null) {
+            return;
+        }
+        Trace trace = (Trace) property;
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - trace.start);
+        int status = responseContext.getStatus();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            log(Level.FINE, "ClientResponse {0} [{1}]", status, trace.id);
+        }
+        Settings current = settings;
+        if (trace.sampled
+                || (current.slowThreshold > 0 && duration >= current.slowThreshold)
+                || (current.logFailed && status >= 400)) {
+            log(Level.INFO, "{0} {1} -> {2} in {3} ms, {4} bytes sent, {5} bytes received [{6}]",
+                    requestContext.getMethod(), requestContext.getUri(), status, duration,
+                    trace.requestBytes, responseContext.getLength(), trace.id);
+        }
+    }
+
+    private void log(Level level, String message, Object... params) {
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(LOGGER.getName());
+        record.setSourceClassName(ClientLoggingFilter.class.getName());
+        record.setSourceMethodName("filter");
+        record.setParameters(params);
+        writer.write(record);
+    }
+
+    /**
+     * Stop the writer after the queued records are logged.
+     */
+    public void close() {
+        writer.close();
+    }
+
+    private static final class Settings {
+
+        private final int sampleRate;
+        private final long slowThreshold;
+        private final boolean logFailed;
+        private final String correlationHeader;
+        private final boolean tracing;
+
+        Settings(int sampleRate, long slowThreshold, boolean logFailed, String correlationHeader) {
+            this.sampleRate = sampleRate;
+            this.slowThreshold = slowThreshold;
+            this.logFailed = logFailed;
+            this.correlationHeader = correlationHeader;
+            this.tracing = sampleRate > 0 || slowThreshold > 0 || logFailed;
+        }
+
+    }
+
+    private static final class Trace {
+
+        private final String id;
+        private final boolean sampled;
+        private final long start;
+        private long requestBytes;
+
+        Trace(String id, boolean sampled, long start) {
+            this.id = id;
+            this.sampled = sampled;
+            this.start = start;
+        }
+
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
     }
 
 }
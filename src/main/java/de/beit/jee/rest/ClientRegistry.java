@@ -0,0 +1,802 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.Configuration;
+import de.beit.jee.config.ConfigurationListener;
+import de.beit.jee.config.PropertyNotFoundException;
+import de.beit.jee.rest.balance.LoadBalancer;
+import de.beit.jee.rest.balance.LoadBalancingFilter;
+import de.beit.jee.rest.cache.ResponseCache;
+import de.beit.jee.rest.cache.ResponseCacheFilter;
+import de.beit.jee.rest.codec.Codec;
+import de.beit.jee.rest.codec.CodecFilter;
+import de.beit.jee.rest.codec.CodecNegotiation;
+import de.beit.jee.rest.codec.CodecProvider;
+import de.beit.jee.rest.codec.Codecs;
+import de.beit.jee.rest.compression.CompressionFilter;
+import de.beit.jee.rest.metrics.CompressionMetrics;
+import de.beit.jee.rest.metrics.MetricsFilter;
+import de.beit.jee.rest.metrics.MetricsInterceptor;
+import de.beit.jee.rest.metrics.MetricsRegistry;
+import de.beit.jee.rest.resilience.Bulkhead;
+import de.beit.jee.rest.resilience.CircuitBreaker;
+import de.beit.jee.rest.resilience.ConcurrencyLimiter;
+import de.beit.jee.rest.resilience.HedgingInterceptor;
+import de.beit.jee.rest.resilience.RateLimiter;
+import de.beit.jee.rest.resilience.RetryInterceptor;
+import de.beit.jee.rest.stream.StreamingClientBuilder;
+import de.beit.jee.rest.stream.StreamingInterceptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.ext.WriterInterceptor;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
+
+/**
+ * This Registry holds one long-lived, pooled client per endpoint interface and security mode
+ * and caches the proxies created with these clients.
+ * <p>The pool of an endpoint is configured with the following Properties:</p>
+ * <ul>
+ * <li>&lt;Interface&gt;.pool.maxTotal - maximum number of connections (default 50)</li>
+ * <li>&lt;Interface&gt;.pool.maxPerRoute - maximum number of connections per host (default 20)</li>
+ * <li>&lt;Interface&gt;.pool.idleTimeout - seconds after which idle connections are closed (default 60)</li>
+ * <li>&lt;Interface&gt;.pool.ttl - maximum lifetime of a connection in seconds (default unlimited)</li>
+ * <li>&lt;Interface&gt;.pool.checkoutTimeout - milliseconds to wait for a free connection (default unlimited)</li>
+ * </ul>
+ * <p>The responses of an endpoint are cached if &lt;Interface&gt;.cache.enabled is true. All endpoints share one
+ * {@link ResponseCache} that is configured with the following Properties:</p>
+ * <ul>
+ * <li>restclient.cache.maxBytes - memory limit of the cache in bytes (default 32 MB)</li>
+ * <li>restclient.cache.maxEntryBytes - memory limit of a single response in bytes (default 1 MB)</li>
+ * <li>restclient.cache.offHeap - keep the cached bodies outside of the heap (default false)</li>
+ * </ul>
+ * <p>Identical concurrent GET calls of an endpoint share one HTTP call if &lt;Interface&gt;.coalesce is true.</p>
+ * <p>The resilience of an endpoint is configured with the following Properties:</p>
+ * <ul>
+ * <li>&lt;Interface&gt;.timeout.connect - milliseconds to establish a connection (default unlimited)</li>
+ * <li>&lt;Interface&gt;.timeout.read - milliseconds to wait for data (default unlimited)</li>
+ * <li>&lt;Interface&gt;.circuitBreaker.enabled - use a {@link CircuitBreaker} (default false)</li>
+ * <li>&lt;Interface&gt;.circuitBreaker.windowSize - number of recorded calls (default 20)</li>
+ * <li>&lt;Interface&gt;.circuitBreaker.minimumCalls - calls needed before the breaker opens (default 10)</li>
+ * <li>&lt;Interface&gt;.circuitBreaker.failureRate - failed calls in percent that open the breaker (default 50)</li>
+ * <li>&lt;Interface&gt;.circuitBreaker.openDuration - milliseconds until a trial call is made (default 30000)</li>
+ * <li>&lt;Interface&gt;.bulkhead.maxConcurrent - maximum number of concurrent calls (default unlimited)</li>
+ * <li>&lt;Interface&gt;.bulkhead.maxWait - milliseconds to wait for a free slot (default 0)</li>
+ * <li>&lt;Interface&gt;.limiter.enabled - adapt the concurrent calls with a {@link ConcurrencyLimiter} (default false)</li>
+ * <li>&lt;Interface&gt;.limiter.algorithm - AIMD, VEGAS or GRADIENT (default GRADIENT)</li>
+ * <li>&lt;Interface&gt;.limiter.initialLimit - concurrent calls before the limit adapts (default 20)</li>
+ * <li>&lt;Interface&gt;.limiter.minLimit - smallest limit (default 1)</li>
+ * <li>&lt;Interface&gt;.limiter.maxLimit - largest limit (default 200)</li>
+ * <li>&lt;Interface&gt;.limiter.maxWait - milliseconds to wait above the limit (default 0)</li>
+ * <li>&lt;Interface&gt;.rateLimit.perSecond - maximum calls per second of a {@link RateLimiter} (default unlimited)</li>
+ * <li>&lt;Interface&gt;.rateLimit.burst - calls that may be made at once after a pause (default perSecond)</li>
+ * <li>&lt;Interface&gt;.rateLimit.maxWait - milliseconds to wait for the rate limit (default 0)</li>
+ * <li>&lt;Interface&gt;.retry.maxAttempts - attempts of idempotent calls (default 1)</li>
+ * <li>&lt;Interface&gt;.retry.initialBackoff - milliseconds before the first retry (default 100)</li>
+ * <li>&lt;Interface&gt;.retry.maxBackoff - maximum milliseconds between retries (default 2000)</li>
+ * <li>&lt;Interface&gt;.hedge.enabled - send a second attempt of slow GET calls with a {@link HedgingInterceptor} (default false)</li>
+ * <li>&lt;Interface&gt;.hedge.delay - milliseconds before the second attempt (default 50)</li>
+ * <li>&lt;Interface&gt;.hedge.percentile - percentile of the recent latencies used as delay instead (default 0, off)</li>
+ * <li>&lt;Interface&gt;.hedge.budget - second attempts in percent of the calls (default 10)</li>
+ * <li>restclient.hedge.threads - threads for the second attempts of all endpoints (default 10)</li>
+ * </ul>
+ * <p>Request and response bodies of an endpoint are compressed if &lt;Interface&gt;.compression.enabled is true:</p>
+ * <ul>
+ * <li>&lt;Interface&gt;.compression.encoding - gzip or deflate for request bodies (default gzip)</li>
+ * <li>&lt;Interface&gt;.compression.level - compression level from 1 to 9 (default 6)</li>
+ * <li>&lt;Interface&gt;.compression.threshold - smallest request body in bytes that is compressed (default 1024)</li>
+ * </ul>
+ * <p>Bodies of an endpoint are exchanged in a binary format instead of JSON if &lt;Interface&gt;.codec names a
+ * {@link Codec} (smile, cbor or a class name). Backends that do not support it get JSON:</p>
+ * <ul>
+ * <li>&lt;Interface&gt;.codec.fallbackDuration - milliseconds JSON is used after the backend rejected the codec (default 300000)</li>
+ * </ul>
+ * <p>&lt;Interface&gt;.endpoint may list several comma separated URLs. The calls are then spread by a
+ * {@link LoadBalancer} that is configured with the following Properties:</p>
+ * <ul>
+ * <li>&lt;Interface&gt;.loadBalancer.strategy - ROUND_ROBIN, LEAST_OUTSTANDING or EWMA (default ROUND_ROBIN)</li>
+ * <li>&lt;Interface&gt;.loadBalancer.ejectAfter - consecutive failures that eject a URL, 0 to never eject (default 5)</li>
+ * <li>&lt;Interface&gt;.loadBalancer.ejectDuration - milliseconds a URL is ejected the first time (default 30000)</li>
+ * <li>&lt;Interface&gt;.health.path - path of the health check relative to the URLs (default no health check)</li>
+ * <li>&lt;Interface&gt;.health.interval - milliseconds between health checks (default 10000)</li>
+ * </ul>
+ * <p>Calls of a {@link Batch} are grouped according to the following Properties:</p>
+ * <ul>
+ * <li>&lt;Interface&gt;.batch.window - milliseconds to collect calls for a bulk call (default 10)</li>
+ * <li>&lt;Interface&gt;.batch.maxSize - maximum number of calls merged into one bulk call (default 100)</li>
+ * <li>&lt;Interface&gt;.batch.parallelism - maximum number of concurrent calls of a Batch (default 4)</li>
+ * <li>&lt;Interface&gt;.bulk.&lt;method&gt; - name of the bulk method, overrides the {@link Bulk} annotation</li>
+ * </ul>
+ * <p>Latency, outcome and transferred bytes of every call and the utilisation of the pools are recorded in the
+ * {@link MetricsRegistry} unless restclient.metrics.enabled is false.</p>
+ * <p>All clients share one {@link ClientLoggingFilter} that traces calls according to the following Properties:</p>
+ * <ul>
+ * <li>restclient.trace.sampleRate - trace one in N calls (default 0, no sampling)</li>
+ * <li>restclient.trace.slowThreshold - trace calls slower than this number of milliseconds (default 0, off)</li>
+ * <li>restclient.trace.failed - trace calls answered with status 400 or higher (default false)</li>
+ * <li>restclient.trace.header - name of the correlation ID header (default X-Correlation-ID)</li>
+ * <li>restclient.trace.bufferSize - number of log records waiting to be written (default 1024)</li>
+ * </ul>
+ * <p>All pools are closed when the application is undeployed.</p>
+ *
+ * @author Markus Pauer
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ClientRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientRegistry.class.getName());
+
+    private static final int DEFAULT_MAX_TOTAL = 50;
+    private static final int DEFAULT_MAX_PER_ROUTE = 20;
+    private static final long DEFAULT_IDLE_TIMEOUT = 60;
+    private static final long DEFAULT_CACHE_MAX_BYTES = 32 * 1024 * 1024;
+    private static final long DEFAULT_CACHE_MAX_ENTRY_BYTES = 1024 * 1024;
+    private static final long RETIREMENT_GRACE_PERIOD = 60 * 1000;
+    private static final int DEFAULT_WINDOW_SIZE = 20;
+    private static final int DEFAULT_MINIMUM_CALLS = 10;
+    private static final int DEFAULT_FAILURE_RATE = 50;
+    private static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+    private static final long DEFAULT_INITIAL_BACKOFF = 100;
+    private static final long DEFAULT_MAX_BACKOFF = 2000;
+    private static final int DEFAULT_TRACE_BUFFER_SIZE = 1024;
+    private static final int DEFAULT_EJECT_AFTER = 5;
+    private static final long DEFAULT_EJECT_DURATION = 30000;
+    private static final long DEFAULT_HEALTH_INTERVAL = 10000;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    private static final long DEFAULT_CODEC_FALLBACK_DURATION = 5 * 60 * 1000;
+    private static final int DEFAULT_INITIAL_LIMIT = 20;
+    private static final int DEFAULT_MAX_LIMIT = 200;
+    private static final long DEFAULT_HEDGE_DELAY = 50;
+    private static final int DEFAULT_HEDGE_BUDGET = 10;
+    private static final long DEFAULT_HEDGE_TIMEOUT = 30000;
+
+    @Inject
+    private Configuration configuration;
+
+    @Inject
+    private AsyncExecutor asyncExecutor;
+
+    @Inject
+    private SslContextProvider sslContextProvider;
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    private final ConcurrentMap<ClientKey, PooledClient> clients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ProxyKey, EndpointProxy<?>> proxies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, HedgingInterceptor> hedgingInterceptors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, BatchOptions> batchOptions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, LoadBalancer> loadBalancers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, CodecNegotiation> codecNegotiations = new ConcurrentHashMap<>();
+    private volatile ResponseCache responseCache;
+    private ClientLoggingFilter loggingFilter;
+
+    private final List<PooledClient> retiredClients = new CopyOnWriteArrayList<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final ConfigurationListener listener = new ConfigurationListener() {
+        @Override
+        public void configurationChanged(Set<String> keys) {
+            endpointsChanged(keys);
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        loggingFilter = new ClientLoggingFilter(configuration.getIntProperty("restclient.trace.bufferSize", DEFAULT_TRACE_BUFFER_SIZE));
+        configureTracing();
+        configuration.addListener("", listener);
+    }
+
+    private void configureTracing() {
+        loggingFilter.configure(configuration.getIntProperty("restclient.trace.sampleRate", 0),
+                configuration.getLongProperty("restclient.trace.slowThreshold", 0),
+                configuration.getBooleanProperty("restclient.trace.failed", false),
+                configuration.getProperty("restclient.trace.header", "X-Correlation-ID"));
+    }
+
+    /**
+     * Get the cached proxy of the endpoint interface.
+     * <p>The proxy is created once and replaced when the configuration of the endpoint changes.</p>
+     *
+     * @param <T> endpoint interface
+     * @param type - endpoint interface
+     * @param secured - use the client certificate of the {@link SslContextProvider}
+     * @param userAware - register the User header filter
+     * @return cached proxy
+     * @throws PropertyNotFoundException if the URL of the endpoint is not configured
+     */
+    @SuppressWarnings("unchecked")
+    <T> EndpointProxy<T> getProxy(Class<T> type, boolean secured, boolean userAware) throws PropertyNotFoundException {
+        ProxyKey key = new ProxyKey(type, isSecured(secured), userAware);
+        EndpointProxy<T> proxy = (EndpointProxy<T>) proxies.get(key);
+        if (proxy == null) {
+            long currentGeneration = generation.get();
+            String url = configuration.getProperty(type.getName() + ".endpoint");
+            proxy = createProxy(type, url, key.getClientKey().isSecured(), userAware);
+            EndpointProxy<T> existing = (EndpointProxy<T>) proxies.putIfAbsent(key, proxy);
+            if (existing != null) {
+                return existing;
+            }
+            if (generation.get() != currentGeneration) {
+                // the configuration changed meanwhile, so this proxy is used only once
+                proxies.remove(key, proxy);
+            }
+        }
+        return proxy;
+    }
+
+    /**
+     * Drop the proxies and, if their pool settings changed, the clients of the endpoints with changed Properties.
+     * Replaced clients are closed after a grace period, so running calls can finish.
+     */
+    private void endpointsChanged(Set<String> keys) {
+        if (isChanged(keys, "restclient.trace.")) {
+            configureTracing();
+        }
+        generation.incrementAndGet();
+        for (ProxyKey key : proxies.keySet()) {
+            if (isChanged(keys, key.getClientKey().getType().getName() + ".")) {
+                LOGGER.log(Level.INFO, "Endpoint {0} has changed", key.getClientKey().getType().getName());
+                proxies.remove(key);
+            }
+        }
+        for (Class<?> type : circuitBreakers.keySet()) {
+            if (isChanged(keys, type.getName() + ".circuitBreaker.")) {
+                circuitBreakers.remove(type);
+            }
+        }
+        for (Class<?> type : bulkheads.keySet()) {
+            if (isChanged(keys, type.getName() + ".bulkhead.")) {
+                bulkheads.remove(type);
+            }
+        }
+        for (Class<?> type : concurrencyLimiters.keySet()) {
+            if (isChanged(keys, type.getName() + ".limiter.")) {
+                concurrencyLimiters.remove(type);
+            }
+        }
+        for (Class<?> type : rateLimiters.keySet()) {
+            if (isChanged(keys, type.getName() + ".rateLimit.")) {
+                rateLimiters.remove(type);
+            }
+        }
+        for (Class<?> type : hedgingInterceptors.keySet()) {
+            if (isChanged(keys, type.getName() + ".hedge.") || isChanged(keys, type.getName() + ".timeout.read")) {
+                hedgingInterceptors.remove(type);
+            }
+        }
+        for (Class<?> type : codecNegotiations.keySet()) {
+            if (isChanged(keys, type.getName() + ".codec")) {
+                codecNegotiations.remove(type);
+            }
+        }
+        for (Class<?> type : batchOptions.keySet()) {
+            if (isChanged(keys, type.getName() + ".batch.") || isChanged(keys, type.getName() + ".bulk.")) {
+                batchOptions.remove(type);
+            }
+        }
+        synchronized (clients) {
+            for (ClientKey key : clients.keySet()) {
+                String name = key.getType().getName();
+                if (isChanged(keys, name + ".pool.") || isChanged(keys, name + ".cache.") || isChanged(keys, name + ".timeout.")
+                        || isChanged(keys, name + ".compression.")) {
+                    PooledClient pooledClient = clients.remove(key);
+                    metricsRegistry.removePool(poolName(key));
+                    pooledClient.retire();
+                    retiredClients.add(pooledClient);
+                }
+            }
+        }
+    }
+
+    private static boolean isChanged(Set<String> keys, String prefix) {
+        for (String key : keys) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> EndpointProxy<T> createProxy(Class<T> type, String url, boolean secured, boolean userAware) {
+        List<String> urls = splitUrls(url);
+        ResteasyWebTarget target = getClient(type, secured).target(urls.get(0));
+        if (userAware) {
+            target = target.register(new UserHeaderRequestFilter()).register(WebApplicationExceptionMapper.class);
+        }
+        LoadBalancer loadBalancer = null;
+        if (urls.size() > 1) {
+            loadBalancer = getLoadBalancer(type, urls);
+            target = target.register(new LoadBalancingFilter(urls.get(0)), Priorities.AUTHENTICATION);
+        } else {
+            loadBalancers.remove(type);
+        }
+        CodecNegotiation codecNegotiation = getCodecNegotiation(type);
+        if (codecNegotiation != null) {
+            target = target.register(new CodecFilter()).register(new CodecProvider(codecNegotiation.getCodec()));
+        }
+        return new EndpointProxy<>(type, url, target.proxy(type), createInterceptors(type, target, loadBalancer, codecNegotiation));
+    }
+
+    private static List<String> splitUrls(String url) {
+        List<String> urls = new ArrayList<>();
+        for (String part : url.split(",")) {
+            String trimmed = part.trim();
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (!trimmed.isEmpty() && !urls.contains(trimmed)) {
+                urls.add(trimmed);
+            }
+        }
+        return urls.isEmpty() ? Arrays.asList(url) : urls;
+    }
+
+    /**
+     * The load balancer is shared by all proxies of the endpoint interface and keeps the statistics
+     * of the URLs that remain when the URL list changes.
+     */
+    private LoadBalancer getLoadBalancer(Class<?> type, List<String> urls) {
+        LoadBalancer loadBalancer = loadBalancers.get(type);
+        if (loadBalancer == null) {
+            loadBalancer = new LoadBalancer(type.getName());
+            LoadBalancer existing = loadBalancers.putIfAbsent(type, loadBalancer);
+            if (existing != null) {
+                loadBalancer = existing;
+            }
+        }
+        String prefix = type.getName() + ".loadBalancer.";
+        LoadBalancer.Strategy strategy;
+        try {
+            strategy = LoadBalancer.Strategy.valueOf(configuration.getProperty(prefix + "strategy", "ROUND_ROBIN").trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, "Unknown load balancing strategy for {0}, using ROUND_ROBIN", type.getName());
+            strategy = LoadBalancer.Strategy.ROUND_ROBIN;
+        }
+        loadBalancer.configure(urls, strategy, configuration.getIntProperty(prefix + "ejectAfter", DEFAULT_EJECT_AFTER),
+                configuration.getLongProperty(prefix + "ejectDuration", DEFAULT_EJECT_DURATION));
+        return loadBalancer;
+    }
+
+    /**
+     * The codec negotiation is shared by all proxies of the endpoint interface, so a fallback to JSON applies to all.
+     *
+     * @return negotiation or null if the endpoint uses JSON
+     */
+    private CodecNegotiation getCodecNegotiation(Class<?> type) {
+        String name = configuration.getProperty(type.getName() + ".codec", null);
+        Codec codec = name != null && !name.trim().isEmpty() ? Codecs.get(name) : null;
+        if (codec == null) {
+            codecNegotiations.remove(type);
+            return null;
+        }
+        CodecNegotiation codecNegotiation = codecNegotiations.get(type);
+        if (codecNegotiation == null) {
+            codecNegotiation = new CodecNegotiation(type, codec,
+                    configuration.getLongProperty(type.getName() + ".codec.fallbackDuration", DEFAULT_CODEC_FALLBACK_DURATION));
+            CodecNegotiation existing = codecNegotiations.putIfAbsent(type, codecNegotiation);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return codecNegotiation;
+    }
+
+    /**
+     * Get the batch settings and bulk methods of the endpoint interface.
+     *
+     * @param type - endpoint interface
+     * @return cached options
+     */
+    BatchOptions getBatchOptions(Class<?> type) {
+        BatchOptions options = batchOptions.get(type);
+        if (options == null) {
+            options = BatchOptions.create(type, configuration);
+            BatchOptions existing = batchOptions.putIfAbsent(type, options);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * The interceptors run in this order: coalescing, hedging, codec negotiation, retry, load balancer, circuit breaker,
+     * rate limiter, bulkhead, concurrency limiter, metrics, streaming. So coalesced calls share the retries, both
+     * attempts of a hedged call and a call repeated with JSON pass all others again, every attempt chooses its URL,
+     * passes the circuit breaker and the limits, and the concurrency limiter and the metrics see the round-trip time
+     * of each HTTP call.
+     * Methods returning an Iterator are executed by the streaming interceptor.
+     */
+    private EndpointInterceptor[] createInterceptors(Class<?> type, ResteasyWebTarget target, LoadBalancer loadBalancer,
+            CodecNegotiation codecNegotiation) {
+        String name = type.getName();
+        List<EndpointInterceptor> interceptors = new ArrayList<>();
+        if (configuration.getBooleanProperty(name + ".coalesce", false)) {
+            interceptors.add(new CoalescingInterceptor());
+        }
+        if (configuration.getBooleanProperty(name + ".hedge.enabled", false)) {
+            interceptors.add(getHedgingInterceptor(type));
+        }
+        if (codecNegotiation != null) {
+            interceptors.add(codecNegotiation);
+        }
+        int maxAttempts = configuration.getIntProperty(name + ".retry.maxAttempts", 1);
+        if (maxAttempts > 1) {
+            interceptors.add(new RetryInterceptor(maxAttempts,
+                    configuration.getLongProperty(name + ".retry.initialBackoff", DEFAULT_INITIAL_BACKOFF),
+                    configuration.getLongProperty(name + ".retry.maxBackoff", DEFAULT_MAX_BACKOFF)));
+        }
+        if (loadBalancer != null) {
+            interceptors.add(loadBalancer);
+        }
+        if (configuration.getBooleanProperty(name + ".circuitBreaker.enabled", false)) {
+            interceptors.add(getCircuitBreaker(type));
+        }
+        if (configuration.getDoubleProperty(name + ".rateLimit.perSecond", 0) > 0) {
+            interceptors.add(getRateLimiter(type));
+        }
+        if (configuration.getIntProperty(name + ".bulkhead.maxConcurrent", 0) > 0) {
+            interceptors.add(getBulkhead(type));
+        }
+        if (configuration.getBooleanProperty(name + ".limiter.enabled", false)) {
+            interceptors.add(getConcurrencyLimiter(type));
+        }
+        if (isMetricsEnabled()) {
+            interceptors.add(new MetricsInterceptor(metricsRegistry));
+        }
+        StreamingInterceptor streamingInterceptor = StreamingInterceptor.create(type, target);
+        if (streamingInterceptor != null) {
+            interceptors.add(streamingInterceptor);
+        }
+        return interceptors.toArray(new EndpointInterceptor[interceptors.size()]);
+    }
+
+    /**
+     * The circuit breaker is shared by all proxies of the endpoint interface.
+     */
+    private CircuitBreaker getCircuitBreaker(Class<?> type) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(type);
+        if (circuitBreaker == null) {
+            String prefix = type.getName() + ".circuitBreaker.";
+            circuitBreaker = new CircuitBreaker(type.getName(),
+                    Math.max(1, configuration.getIntProperty(prefix + "windowSize", DEFAULT_WINDOW_SIZE)),
+                    configuration.getIntProperty(prefix + "minimumCalls", DEFAULT_MINIMUM_CALLS),
+                    configuration.getIntProperty(prefix + "failureRate", DEFAULT_FAILURE_RATE),
+                    configuration.getLongProperty(prefix + "openDuration", DEFAULT_OPEN_DURATION));
+            CircuitBreaker existing = circuitBreakers.putIfAbsent(type, circuitBreaker);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * The bulkhead is shared by all proxies of the endpoint interface.
+     */
+    private Bulkhead getBulkhead(Class<?> type) {
+        Bulkhead bulkhead = bulkheads.get(type);
+        if (bulkhead == null) {
+            String prefix = type.getName() + ".bulkhead.";
+            bulkhead = new Bulkhead(type.getName(),
+                    configuration.getIntProperty(prefix + "maxConcurrent", 0),
+                    configuration.getLongProperty(prefix + "maxWait", 0));
+            Bulkhead existing = bulkheads.putIfAbsent(type, bulkhead);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * The concurrency limiter is shared by all proxies of the endpoint interface and keeps its limit.
+     */
+    private ConcurrencyLimiter getConcurrencyLimiter(Class<?> type) {
+        ConcurrencyLimiter limiter = concurrencyLimiters.get(type);
+        if (limiter == null) {
+            String prefix = type.getName() + ".limiter.";
+            ConcurrencyLimiter.Algorithm algorithm;
+            try {
+                algorithm = ConcurrencyLimiter.Algorithm.valueOf(configuration.getProperty(prefix + "algorithm", "GRADIENT").trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(Level.WARNING, "Unknown concurrency limit algorithm for {0}, using GRADIENT", type.getName());
+                algorithm = ConcurrencyLimiter.Algorithm.GRADIENT;
+            }
+            limiter = new ConcurrencyLimiter(type.getName(), algorithm,
+                    configuration.getIntProperty(prefix + "initialLimit", DEFAULT_INITIAL_LIMIT),
+                    configuration.getIntProperty(prefix + "minLimit", 1),
+                    configuration.getIntProperty(prefix + "maxLimit", DEFAULT_MAX_LIMIT),
+                    configuration.getLongProperty(prefix + "maxWait", 0));
+            ConcurrencyLimiter existing = concurrencyLimiters.putIfAbsent(type, limiter);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * The hedging interceptor is shared by all proxies of the endpoint interface, so they share the budget and the latencies.
+     */
+    private HedgingInterceptor getHedgingInterceptor(Class<?> type) {
+        HedgingInterceptor interceptor = hedgingInterceptors.get(type);
+        if (interceptor == null) {
+            String prefix = type.getName() + ".hedge.";
+            long readTimeout = configuration.getLongProperty(type.getName() + ".timeout.read", -1);
+            interceptor = new HedgingInterceptor(type.getName(),
+                    configuration.getLongProperty(prefix + "delay", DEFAULT_HEDGE_DELAY),
+                    configuration.getDoubleProperty(prefix + "percentile", 0),
+                    configuration.getIntProperty(prefix + "budget", DEFAULT_HEDGE_BUDGET),
+                    readTimeout > 0 ? readTimeout : DEFAULT_HEDGE_TIMEOUT,
+                    asyncExecutor.getScheduledExecutorService(), asyncExecutor.getHedgeExecutorService());
+            HedgingInterceptor existing = hedgingInterceptors.putIfAbsent(type, interceptor);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return interceptor;
+    }
+
+    /**
+     * The rate limiter is shared by all proxies of the endpoint interface.
+     */
+    private RateLimiter getRateLimiter(Class<?> type) {
+        RateLimiter limiter = rateLimiters.get(type);
+        if (limiter == null) {
+            String prefix = type.getName() + ".rateLimit.";
+            double perSecond = configuration.getDoubleProperty(prefix + "perSecond", 0);
+            limiter = new RateLimiter(type.getName(), perSecond,
+                    configuration.getIntProperty(prefix + "burst", (int) Math.ceil(perSecond)),
+                    configuration.getLongProperty(prefix + "maxWait", 0));
+            RateLimiter existing = rateLimiters.putIfAbsent(type, limiter);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Get the shared client of the endpoint interface.
+     *
+     * @param type - endpoint interface
+     * @param secured - use the client certificate of the {@link SslContextProvider}
+     * @return pooled client
+     */
+    public ResteasyClient getClient(Class<?> type, boolean secured) {
+        ClientKey key = new ClientKey(type, isSecured(secured));
+        PooledClient pooledClient = clients.get(key);
+        if (pooledClient == null) {
+            synchronized (clients) {
+                pooledClient = clients.get(key);
+                if (pooledClient == null) {
+                    pooledClient = createClient(key);
+                    clients.put(key, pooledClient);
+                }
+            }
+        }
+        return pooledClient.getClient();
+    }
+
+    /**
+     * Secured endpoints without a configured KeyStore use a plain client.
+     */
+    private boolean isSecured(boolean secured) {
+        return secured && sslContextProvider.getSslContext() != null;
+    }
+
+    private boolean isMetricsEnabled() {
+        return configuration.getBooleanProperty("restclient.metrics.enabled", true);
+    }
+
+    private static String poolName(ClientKey key) {
+        return key.isSecured() ? key.getType().getName() + " (secured)" : key.getType().getName();
+    }
+
+    private PooledClient createClient(ClientKey key) {
+        String prefix = key.getType().getName() + ".pool.";
+        int maxTotal = configuration.getIntProperty(prefix + "maxTotal", DEFAULT_MAX_TOTAL);
+        int maxPerRoute = configuration.getIntProperty(prefix + "maxPerRoute", Math.min(DEFAULT_MAX_PER_ROUTE, maxTotal));
+        long idleTimeout = configuration.getLongProperty(prefix + "idleTimeout", DEFAULT_IDLE_TIMEOUT);
+        long ttl = configuration.getLongProperty(prefix + "ttl", -1);
+        long checkoutTimeout = configuration.getLongProperty(prefix + "checkoutTimeout", -1);
+        long connectTimeout = configuration.getLongProperty(key.getType().getName() + ".timeout.connect", -1);
+        long readTimeout = configuration.getLongProperty(key.getType().getName() + ".timeout.read", -1);
+
+        ResteasyClientBuilder builder = new StreamingClientBuilder()
+                .connectionPoolSize(maxTotal)
+                .maxPooledPerRoute(maxPerRoute)
+                .connectionTTL(ttl, TimeUnit.SECONDS)
+                .asyncExecutor(asyncExecutor.getExecutorService());
+        if (checkoutTimeout > -1) {
+            builder.connectionCheckoutTimeout(checkoutTimeout, TimeUnit.MILLISECONDS);
+        }
+        if (connectTimeout > -1) {
+            builder.establishConnectionTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+        }
+        if (readTimeout > -1) {
+            builder.socketTimeout(readTimeout, TimeUnit.MILLISECONDS);
+        }
+        if (key.isSecured()) {
+            builder.sslContext(sslContextProvider.getSslContext());
+        }
+        ResteasyClient client = builder.build();
+        if (LOGGER.isLoggable(Level.FINER)) {
+            for (String property : client.getConfiguration().getProperties().keySet()) {
+                LOGGER.log(Level.FINER, "{0}: {1}", new Object[]{property, client.getConfiguration().getProperty(property)});
+            }
+        }
+        client.register(loggingFilter);
+        if (configuration.getBooleanProperty(key.getType().getName() + ".cache.enabled", false)) {
+            client.register(new ResponseCacheFilter(getResponseCache()), Priorities.USER + 1000);
+        }
+        boolean metricsEnabled = isMetricsEnabled();
+        if (metricsEnabled) {
+            client.register(MetricsFilter.class);
+        }
+        if (configuration.getBooleanProperty(key.getType().getName() + ".compression.enabled", false)) {
+            registerCompression(client, key.getType(), metricsEnabled);
+        }
+        LOGGER.log(Level.FINE, "Created client {0} with {1} connections ({2} per route)", new Object[]{key, maxTotal, maxPerRoute});
+        PooledClient pooledClient = new PooledClient(client, idleTimeout);
+        if (metricsEnabled && pooledClient.getPoolControl() != null) {
+            metricsRegistry.addPool(poolName(key), pooledClient.getPoolControl());
+        }
+        return pooledClient;
+    }
+
+    /**
+     * The response filter runs after the {@link MetricsFilter} and the writer interceptor inside of it,
+     * so the metrics count the bytes on the wire.
+     */
+    private void registerCompression(ResteasyClient client, Class<?> type, boolean metricsEnabled) {
+        String prefix = type.getName() + ".compression.";
+        CompressionMetrics compressionMetrics = metricsEnabled ? metricsRegistry.getCompressionMetrics(type) : new CompressionMetrics();
+        CompressionFilter filter = new CompressionFilter(configuration.getProperty(prefix + "encoding", "gzip"),
+                configuration.getIntProperty(prefix + "level", DEFAULT_COMPRESSION_LEVEL),
+                configuration.getIntProperty(prefix + "threshold", DEFAULT_COMPRESSION_THRESHOLD),
+                compressionMetrics);
+        Map<Class<?>, Integer> priorities = new HashMap<>();
+        priorities.put(ClientRequestFilter.class, Priorities.ENTITY_CODER);
+        priorities.put(ClientResponseFilter.class, Priorities.ENTITY_CODER);
+        priorities.put(WriterInterceptor.class, Priorities.USER + 500);
+        client.register(filter, priorities);
+    }
+
+    /**
+     * Get the cache shared by all endpoints with enabled response caching.
+     *
+     * @return response cache
+     */
+    public ResponseCache getResponseCache() {
+        if (responseCache == null) {
+            synchronized (clients) {
+                if (responseCache == null) {
+                    responseCache = new ResponseCache(
+                            configuration.getLongProperty("restclient.cache.maxBytes", DEFAULT_CACHE_MAX_BYTES),
+                            configuration.getLongProperty("restclient.cache.maxEntryBytes", DEFAULT_CACHE_MAX_ENTRY_BYTES),
+                            configuration.getBooleanProperty("restclient.cache.offHeap", false));
+                }
+            }
+        }
+        return responseCache;
+    }
+
+    /**
+     * Check the health of the URLs of load balanced endpoints with a health path.
+     */
+    @Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+    public void checkHealth() {
+        for (Map.Entry<Class<?>, LoadBalancer> entry : loadBalancers.entrySet()) {
+            String name = entry.getKey().getName();
+            String path = configuration.getProperty(name + ".health.path", null);
+            if (path == null || path.isEmpty()) {
+                continue;
+            }
+            boolean secured = entry.getValue().getBackends().get(0).getUrl().startsWith("https:");
+            try {
+                entry.getValue().checkHealth(getClient(entry.getKey(), secured), path,
+                        configuration.getLongProperty(name + ".health.interval", DEFAULT_HEALTH_INTERVAL),
+                        asyncExecutor.getExecutorService());
+            } catch (RejectedExecutionException ex) {
+                LOGGER.log(Level.WARNING, "Health check of {0} rejected", name);
+            }
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/30", persistent = false)
+    public void evictIdleConnections() {
+        for (PooledClient pooledClient : clients.values()) {
+            pooledClient.evictIdleConnections();
+        }
+        long now = System.currentTimeMillis();
+        for (PooledClient pooledClient : retiredClients) {
+            if (pooledClient.isRetiredBefore(now - RETIREMENT_GRACE_PERIOD)) {
+                retiredClients.remove(pooledClient);
+                pooledClient.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        configuration.removeListener(listener);
+        synchronized (clients) {
+            for (ClientKey key : clients.keySet()) {
+                metricsRegistry.removePool(poolName(key));
+            }
+            List<PooledClient> closing = new ArrayList<>(clients.values());
+            closing.addAll(retiredClients);
+            for (PooledClient pooledClient : closing) {
+                try {
+                    pooledClient.close();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Client not closed: {0}", ex.getLocalizedMessage());
+                }
+            }
+            clients.clear();
+            retiredClients.clear();
+            proxies.clear();
+            circuitBreakers.clear();
+            bulkheads.clear();
+            concurrencyLimiters.clear();
+            rateLimiters.clear();
+            hedgingInterceptors.clear();
+            batchOptions.clear();
+            loadBalancers.clear();
+            codecNegotiations.clear();
+            if (responseCache != null) {
+                responseCache.clear();
+            }
+        }
+        loggingFilter.close();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.model.User;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.core.Response;
+
+/**
+ * This Interceptor lets identical concurrent GET calls share one HTTP call.
+ * <p>Calls are identical if they have the same method, arguments and User. The first call is executed,
+ * all others wait for it and get the same result or exception. Note that the waiting callers share the
+ * same deserialized result object, so it must not be modified. Results that can only be consumed once
+ * or are mutable by nature (Response, InputStream, Reader, Iterator, byte[]) and calls without a result
+ * are never shared.</p>
+ * <p>It is enabled with the Property &lt;Interface&gt;.coalesce = true.</p>
+ *
+ * @author Markus Pauer
+ */
+class CoalescingInterceptor implements EndpointInterceptor {
+
+    private final ConcurrentMap<Key, FutureTask<Object>> inFlight = new ConcurrentHashMap<>(64, 0.75f, 64);
+
+    @Override
+    public Object invoke(final EndpointInvocation invocation) throws Exception {
+        Method method = invocation.getMethod();
+        if (!method.isAnnotationPresent(GET.class) && !method.isAnnotationPresent(HEAD.class)
+                || !isShareable(method.getReturnType())) {
+            return invocation.proceed();
+        }
+        Key key = new Key(method, invocation.getArgs(), invocation.getUser());
+        FutureTask<Object> task = new FutureTask<>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return invocation.proceed();
+            }
+        });
+        FutureTask<Object> leader = inFlight.putIfAbsent(key, task);
+        if (leader == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            leader = task;
+        }
+        try {
+            return leader.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    static boolean isShareable(Class<?> type) {
+        return type != void.class && type != Void.class && type != byte[].class
+                && !Response.class.isAssignableFrom(type)
+                && !InputStream.class.isAssignableFrom(type)
+                && !Reader.class.isAssignableFrom(type)
+                && !Iterator.class.isAssignableFrom(type);
+    }
+
+    private static final class Key {
+
+        private final Method method;
+        private final Object[] args;
+        private final String user;
+        private final int hash;
+
+        Key(Method method, Object[] args, User user) {
+            this.method = method;
+            this.args = args;
+            this.user = user != null ? user.encodeUser() : null;
+            this.hash = 31 * (31 * method.hashCode() + Arrays.deepHashCode(args)) + (this.user != null ? this.user.hashCode() : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && method.equals(other.method) && Arrays.deepEquals(args, other.args)
+                    && (user == null ? other.user == null : user.equals(other.user));
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.model.User;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * A call of an endpoint method passing through the {@link EndpointInterceptor}s of the endpoint.
+ * <p>An invocation is immutable, so {@link #proceed()} may be called more than once and from other threads.</p>
+ *
+ * @author Markus Pauer
+ */
+public class EndpointInvocation {
+
+    private final Class<?> type;
+    private final Method method;
+    private final Object[] args;
+    private final User user;
+    private final Object target;
+    private final EndpointInterceptor[] interceptors;
+    private final int position;
+
+    EndpointInvocation(Class<?> type, Method method, Object[] args, User user, Object target, EndpointInterceptor[] interceptors) {
+        this.type = type;
+        this.method = method;
+        this.args = args;
+        this.user = user;
+        this.target = target;
+        this.interceptors = interceptors;
+        this.position = 0;
+    }
+
+    private EndpointInvocation(EndpointInvocation invocation, int position) {
+        this.type = invocation.type;
+        this.method = invocation.method;
+        this.args = invocation.args;
+        this.user = invocation.user;
+        this.target = invocation.target;
+        this.interceptors = invocation.interceptors;
+        this.position = position;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Get the User of the call.
+     *
+     * @return User or null
+     */
+    public User getUser() {
+        return user != null ? user : UserContext.getUser();
+    }
+
+    /**
+     * Continue with the next Interceptor or execute the HTTP call.
+     *
+     * @return result of the call
+     * @throws Exception if the call failed
+     */
+    public Object proceed() throws Exception {
+        if (position < interceptors.length) {
+            return interceptors[position].invoke(new EndpointInvocation(this, position + 1));
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UndeclaredThrowableException(cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type.getSimpleName() + '.' + method.getName();
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.model.User;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * This Handler delegates the calls of an endpoint proxy through the {@link EndpointInterceptor}s
+ * to the cached Resteasy proxy and binds the User of the call to the {@link UserContext} meanwhile.
+ *
+ * @author Markus Pauer
+ */
+class EndpointInvocationHandler implements InvocationHandler {
+
+    private final Class<?> type;
+    private final Object target;
+    private final EndpointInterceptor[] interceptors;
+    private final User user;
+
+    EndpointInvocationHandler(Class<?> type, Object target, EndpointInterceptor[] interceptors, User user) {
+        this.type = type;
+        this.target = target;
+        this.interceptors = interceptors;
+        this.user = user;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        User previous = user != null ? UserContext.setUser(user) : null;
+        try {
+            return new EndpointInvocation(type, method, args, user, target, interceptors).proceed();
+        } finally {
+            if (user != null) {
+                UserContext.setUser(previous);
+            }
+        }
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "EndpointProxy{" + target + ", user=" + user + '}';
+        }
+    }
+
+}
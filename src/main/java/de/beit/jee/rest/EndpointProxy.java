@@ -0,0 +1,80 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.model.User;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * A cached proxy of an endpoint interface for one URL.
+ * <p>The expensive Resteasy proxy is generated only once. Each call of {@link #get(User)}
+ * returns a lightweight proxy that delegates to it.</p>
+ *
+ * @author Markus Pauer
+ * @param <T> endpoint interface
+ */
+final class EndpointProxy<T> {
+
+    private final Class<T> type;
+    private final String url;
+    private final T target;
+    private final EndpointInterceptor[] interceptors;
+    private final Constructor<?> constructor;
+    private final T anonymous;
+
+    EndpointProxy(Class<T> type, String url, T target, EndpointInterceptor[] interceptors) {
+        this.type = type;
+        this.url = url;
+        this.target = target;
+        this.interceptors = interceptors;
+        try {
+            this.constructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+        this.anonymous = newInstance(new EndpointInvocationHandler(type, target, interceptors, null));
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Get a proxy that sends the given User with every call.
+     *
+     * @param user - User or null
+     * @return proxy
+     */
+    T get(User user) {
+        if (user == null) {
+            return anonymous;
+        }
+        return newInstance(new EndpointInvocationHandler(type, target, interceptors, user));
+    }
+
+    private T newInstance(InvocationHandler handler) {
+        try {
+            return type.cast(constructor.newInstance(handler));
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.PropertyNotFoundException;
+import de.beit.jee.model.User;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This FanOut executes calls of several endpoints in parallel and gathers their results.
+ * <pre>
+ * FanOut fanOut = restClient.fanOut(user);
+ * FanOutCall&lt;Customer&gt; customer = fanOut.add(CustomerResource.class, customerCall);
+ * FanOutCall&lt;List&lt;Order&gt;&gt; orders = fanOut.add(OrderResource.class, orderCall, 500, TimeUnit.MILLISECONDS);
+ * fanOut.execute(2, TimeUnit.SECONDS);
+ * </pre>
+ * <p>Calls that have not finished within their timeout or the deadline of the FanOut are cancelled,
+ * the results of all other calls are still available.</p>
+ *
+ * @author Markus Pauer
+ */
+public class FanOut {
+
+    private static final Logger LOGGER = Logger.getLogger(FanOut.class.getName());
+
+    private final ClientRegistry clientRegistry;
+    private final AsyncExecutor executor;
+    private final User user;
+    private final List<Branch<?, ?>> branches = new ArrayList<>();
+    private final List<FanOutCall<?>> calls = new ArrayList<>();
+
+    FanOut(ClientRegistry clientRegistry, AsyncExecutor executor, User user) {
+        this.clientRegistry = clientRegistry;
+        this.executor = executor;
+        this.user = user != null ? user : UserContext.getUser();
+    }
+
+    /**
+     * Add a call that is only limited by the deadline of the FanOut.
+     *
+     * @param <T> endpoint interface
+     * @param <R> result of the call
+     * @param type - endpoint interface
+     * @param call - call of the endpoint
+     * @return handle to the result of the call
+     */
+    public <T, R> FanOutCall<R> add(Class<T> type, Call<T, R> call) {
+        return add(type, call, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a call with its own timeout.
+     *
+     * @param <T> endpoint interface
+     * @param <R> result of the call
+     * @param type - endpoint interface
+     * @param call - call of the endpoint
+     * @param timeout - timeout of the call, 0 for the deadline of the FanOut
+     * @param unit - time unit of the timeout
+     * @return handle to the result of the call
+     */
+    public <T, R> FanOutCall<R> add(Class<T> type, Call<T, R> call, long timeout, TimeUnit unit) {
+        FanOutCall<R> fanOutCall = new FanOutCall<>(type, unit.toNanos(timeout));
+        branches.add(new Branch<>(type, call, fanOutCall));
+        calls.add(fanOutCall);
+        return fanOutCall;
+    }
+
+    /**
+     * Execute all calls in parallel and wait until they are finished or the deadline is reached.
+     *
+     * @param deadline - maximum time to wait for all calls
+     * @param unit - time unit of the deadline
+     * @return all calls of the FanOut
+     */
+    public List<FanOutCall<?>> execute(long deadline, TimeUnit unit) {
+        long start = System.nanoTime();
+        long end = start + unit.toNanos(deadline);
+        for (Branch<?, ?> branch : branches) {
+            branch.submit();
+        }
+        for (FanOutCall<?> call : calls) {
+            await(call, call.getTimeout() > 0 ? Math.min(end, start + call.getTimeout()) : end);
+        }
+        LOGGER.log(Level.FINE, "FanOut of {0} calls finished in {1} ms", new Object[]{calls.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+        return Collections.unmodifiableList(calls);
+    }
+
+    private <R> void await(FanOutCall<R> call, long end) {
+        if (call.getStatus() != FanOutCall.Status.PENDING) {
+            return;
+        }
+        try {
+            call.completed(call.getFuture().get(Math.max(0, end - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (ExecutionException ex) {
+            call.failed(ex.getCause(), FanOutCall.Status.FAILED);
+        } catch (TimeoutException ex) {
+            call.getFuture().cancel(true);
+            call.failed(ex, FanOutCall.Status.TIMED_OUT);
+        } catch (InterruptedException ex) {
+            call.getFuture().cancel(true);
+            call.failed(ex, FanOutCall.Status.FAILED);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Branch<T, R> {
+
+        private final Class<T> type;
+        private final Call<T, R> call;
+        private final FanOutCall<R> fanOutCall;
+
+        Branch(Class<T> type, Call<T, R> call, FanOutCall<R> fanOutCall) {
+            this.type = type;
+            this.call = call;
+            this.fanOutCall = fanOutCall;
+        }
+
+        void submit() {
+            T endpoint;
+            try {
+                endpoint = clientRegistry.getProxy(type, false, user != null).get(user);
+            } catch (PropertyNotFoundException ex) {
+                fanOutCall.failed(new IllegalStateException("No endpoint configured for " + type.getName(), ex), FanOutCall.Status.FAILED);
+                return;
+            }
+            try {
+                fanOutCall.started(executor.submit(fanOutCall.task(endpoint, call)));
+            } catch (RejectedExecutionException ex) {
+                fanOutCall.failed(ex, FanOutCall.Status.REJECTED);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single Call of a {@link FanOut} together with its outcome and timing.
+ *
+ * @author Markus Pauer
+ * @param <R> result of the call
+ */
+public class FanOutCall<R> {
+
+    public enum Status {
+        PENDING, COMPLETED, FAILED, TIMED_OUT, REJECTED
+    }
+
+    private final Class<?> type;
+    private final long timeout;
+    private volatile Status status = Status.PENDING;
+    private volatile R result;
+    private volatile Throwable exception;
+    private volatile long startTime;
+    private volatile long duration = -1;
+    private Future<R> future;
+
+    <T> FanOutCall(Class<T> type, long timeout) {
+        this.type = type;
+        this.timeout = timeout;
+    }
+
+    <T> Callable<R> task(final T endpoint, final Call<T, R> call) {
+        return new Callable<R>() {
+            @Override
+            public R call() throws Exception {
+                startTime = System.nanoTime();
+                try {
+                    return call.call(endpoint);
+                } finally {
+                    duration = System.nanoTime() - startTime;
+                }
+            }
+        };
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    Future<R> getFuture() {
+        return future;
+    }
+
+    void started(Future<R> future) {
+        this.future = future;
+    }
+
+    void completed(R result) {
+        this.result = result;
+        this.status = Status.COMPLETED;
+    }
+
+    void failed(Throwable exception, Status status) {
+        this.exception = exception;
+        this.status = status;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status == Status.COMPLETED;
+    }
+
+    /**
+     * Get the result of the call.
+     *
+     * @return result or null if the call was not successful
+     */
+    public R getResult() {
+        return result;
+    }
+
+    /**
+     * Get the failure of the call.
+     *
+     * @return exception or null if the call was successful
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    /**
+     * Get the time the call was running.
+     *
+     * @param unit - time unit of the result
+     * @return duration or -1 if the call has not finished
+     */
+    public long getDuration(TimeUnit unit) {
+        long nanos = duration;
+        return nanos < 0 ? -1 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "FanOutCall{" + "type=" + type.getName() + ", status=" + status + ", duration=" + getDuration(TimeUnit.MILLISECONDS) + "ms}";
+    }
+
+}
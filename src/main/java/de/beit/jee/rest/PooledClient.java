@@ -0,0 +1,93 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.HttpClient;
+import org.apache.http.pool.ConnPoolControl;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+
+/**
+ * A long-lived client together with its connection pool.
+ *
+ * @author Markus Pauer
+ */
+final class PooledClient {
+
+    private final ResteasyClient client;
+    private final HttpClient httpClient;
+    private final ConnPoolControl<?> poolControl;
+    private final long idleTimeout;
+    private volatile long retiredAt;
+
+    PooledClient(ResteasyClient client, long idleTimeout) {
+        this.client = client;
+        this.httpClient = ((ApacheHttpClient4Engine) client.httpEngine()).getHttpClient();
+        this.poolControl = poolControl(httpClient);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Resteasy 3.0 builds its engine with the pre-4.3 connection manager API, which has no replacement
+     * that is reachable from the built client. The deprecated types are confined to this class.
+     */
+    @SuppressWarnings("deprecation")
+    private static ConnPoolControl<?> poolControl(HttpClient httpClient) {
+        Object connectionManager = httpClient.getConnectionManager();
+        return connectionManager instanceof ConnPoolControl ? (ConnPoolControl<?>) connectionManager : null;
+    }
+
+    ResteasyClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return statistics of the pool or null if the connection manager has none
+     */
+    ConnPoolControl<?> getPoolControl() {
+        return poolControl;
+    }
+
+    /**
+     * Close connections that are expired or have been idle longer than the configured timeout.
+     */
+    @SuppressWarnings("deprecation") // see poolControl(HttpClient)
+    void evictIdleConnections() {
+        org.apache.http.conn.ClientConnectionManager connectionManager = httpClient.getConnectionManager();
+        connectionManager.closeExpiredConnections();
+        if (idleTimeout > 0) {
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Mark this client as replaced. It is closed once its grace period is over.
+     */
+    void retire() {
+        retiredAt = System.currentTimeMillis();
+    }
+
+    boolean isRetiredBefore(long time) {
+        return retiredAt > 0 && retiredAt < time;
+    }
+
+    void close() {
+        client.close();
+    }
+
+}
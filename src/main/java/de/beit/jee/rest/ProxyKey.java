@@ -0,0 +1,65 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+/**
+ * Key of a cached proxy: the endpoint interface, its security mode and whether
+ * the User filters are registered.
+ *
+ * @author Markus Pauer
+ */
+final class ProxyKey {
+
+    private final ClientKey clientKey;
+    private final boolean userAware;
+
+    ProxyKey(Class<?> type, boolean secured, boolean userAware) {
+        this.clientKey = new ClientKey(type, secured);
+        this.userAware = userAware;
+    }
+
+    ClientKey getClientKey() {
+        return clientKey;
+    }
+
+    boolean isUserAware() {
+        return userAware;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * clientKey.hashCode() + (userAware ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ProxyKey)) {
+            return false;
+        }
+        ProxyKey other = (ProxyKey) obj;
+        return userAware == other.userAware && clientKey.equals(other.clientKey);
+    }
+
+    @Override
+    public String toString() {
+        return "ProxyKey{" + "clientKey=" + clientKey + ", userAware=" + userAware + '}';
+    }
+
+}
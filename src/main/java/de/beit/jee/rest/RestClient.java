@@ -16,26 +16,14 @@
  */
 package de.beit.jee.rest;
 
-import de.beit.jee.config.Configuration;
 import de.beit.jee.config.PropertyNotFoundException;
 import de.beit.jee.model.User;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
-import org.jboss.resteasy.client.jaxrs.ResteasyClient;
-import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
-import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 
 /**
  * This Client ...
@@ -49,50 +37,18 @@ public class RestClient implements Serializable {
     private static final Logger LOGGER = Logger.getLogger(RestClient.class.getName());
 
     @Inject
-    private Configuration configuration;
-
-    private ResteasyClient client;
-    private KeyStore keyStore;
-    private String password;
-
-    public RestClient() {
-        InputStream is = null;
-        password = System.getProperty("javax.net.ssl.keyStorePassword");
-        String keyStorePath = System.getProperty("javax.net.ssl.keyStore");
-        if (password != null && keyStorePath != null) {
-            try {
-                is = new FileInputStream(keyStorePath);
-                keyStore = KeyStore.getInstance("JKS");
-                keyStore.load(is, password.toCharArray());
-            } catch (FileNotFoundException ex) {
-                LOGGER.log(Level.SEVERE, null, ex);
-            } catch (KeyStoreException | NoSuchAlgorithmException | CertificateException | IOException ex) {
-                LOGGER.log(Level.SEVERE, null, ex);
-            } finally {
-                try {
-                    is.close();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.SEVERE, null, ex);
-                }
-            }
-        }
-    }
+    private ClientRegistry clientRegistry;
 
-    private ResteasyClient createClient(boolean secured) {
-        if (secured) {
-            return new ResteasyClientBuilder().keyStore(keyStore, password).build();
-        }
-        return new ResteasyClientBuilder().build();
-    }
+    @Inject
+    private AsyncExecutor asyncExecutor;
 
-    private ResteasyWebTarget getResteasyWebTarget(String url, Class type, boolean secured) {
-        client = createClient(secured);
-        for (String key : client.getConfiguration().getProperties().keySet()) {
-            Logger.getLogger(RestClient.class.getName()).log(Level.INFO, "{0}: {1}", new Object[]{key, client.getConfiguration().getProperty(key)});
+    private <T> T proxy(Class<T> type, boolean secured, boolean userAware, User user) {
+        try {
+            return clientRegistry.getProxy(type, secured, userAware).get(user);
+        } catch (PropertyNotFoundException ex) {
+            Logger.getLogger(RestClient.class.getName()).log(Level.SEVERE, "Configuration Exception: {0}", ex.getLocalizedMessage());
         }
-        client.register(ClientLoggingFilter.class);
-        ResteasyWebTarget webTarget = (ResteasyWebTarget) client.target(url);
-        return webTarget;
+        return null;
     }
 
     /**
@@ -102,13 +58,7 @@ public class RestClient implements Serializable {
      * @return 
      */
     public <T> T endpoint(Class<T> type) {
-        try {
-            String url = configuration.getProperty(type.getName() + ".endpoint");
-            return (T) getResteasyWebTarget(url, type, false).proxy(type);
-        } catch (PropertyNotFoundException ex) {
-            Logger.getLogger(RestClient.class.getName()).log(Level.SEVERE, "Configuration Exception: {0}", ex.getLocalizedMessage());
-        }
-        return null;
+        return proxy(type, false, false, null);
     }
 
     /**
@@ -118,27 +68,96 @@ public class RestClient implements Serializable {
      * @return 
      */
     public <T> T securedEndpoint(Class<T> type) {
-        try {
-            String url = configuration.getProperty(type.getName() + ".endpoint");
-            return (T) getResteasyWebTarget(url, type, true).proxy(type);
-        } catch (PropertyNotFoundException ex) {
-            Logger.getLogger(RestClient.class.getName()).log(Level.SEVERE, "Configuration Exception: {0}", ex.getLocalizedMessage());
-        }
-        return null;
+        return proxy(type, true, false, null);
     }
 
+    /**
+     * Get the endpoint that sends the given User in the User header.
+     * <p>The proxy is shared, the User is only bound to the calling thread during a call.</p>
+     * 
+     * @param <T>
+     * @param type
+     * @param user
+     * @return 
+     */
     public <T> T endpoint(Class<T> type, User user) {
-        try {
-            String url = configuration.getProperty(type.getName() + ".endpoint");
-            if (user != null) {
-                return (T) getResteasyWebTarget(url, type, false).register(new UserHeaderRequestFilter(user)).register(WebApplicationExceptionMapper.class).proxy(type);
-            } else {
-                return (T) getResteasyWebTarget(url, type, false).register(WebApplicationExceptionMapper.class).proxy(type);
-            }
-        } catch (PropertyNotFoundException ex) {
-            Logger.getLogger(RestClient.class.getName()).log(Level.SEVERE, "Configuration Exception: {0}", ex.getLocalizedMessage());
+        return proxy(type, false, true, user);
+    }
+
+    /**
+     * Get the endpoint whose calls are executed asynchronously.
+     * 
+     * @param <T>
+     * @param type
+     * @return 
+     */
+    public <T> AsyncEndpoint<T> async(Class<T> type) {
+        return async(type, null);
+    }
+
+    /**
+     * Get the endpoint whose calls are executed asynchronously with the given User in the User header.
+     * 
+     * @param <T>
+     * @param type
+     * @param user
+     * @return 
+     */
+    public <T> AsyncEndpoint<T> async(Class<T> type, User user) {
+        T endpoint = user != null ? endpoint(type, user) : endpoint(type);
+        if (endpoint == null) {
+            return null;
         }
-        return null;
+        return new AsyncEndpoint<>(endpoint, asyncExecutor);
+    }
+
+    /**
+     * Start a Batch that groups many calls of the endpoint.
+     * <p>The User bound to the {@link UserContext} is sent with every call.</p>
+     * 
+     * @param <T>
+     * @param type
+     * @return 
+     */
+    public <T> Batch<T> batch(Class<T> type) {
+        return batch(type, null);
+    }
+
+    /**
+     * Start a Batch that groups many calls of the endpoint with the given User in the User header.
+     * 
+     * @param <T>
+     * @param type
+     * @param user
+     * @return 
+     */
+    public <T> Batch<T> batch(Class<T> type, User user) {
+        User batchUser = user != null ? user : UserContext.getUser();
+        T endpoint = batchUser != null ? endpoint(type, batchUser) : endpoint(type);
+        if (endpoint == null) {
+            return null;
+        }
+        return new Batch<>(type, endpoint, asyncExecutor, clientRegistry.getBatchOptions(type));
+    }
+
+    /**
+     * Start a FanOut that executes calls of several endpoints in parallel.
+     * <p>The User bound to the {@link UserContext} is sent with every call.</p>
+     * 
+     * @return 
+     */
+    public FanOut fanOut() {
+        return fanOut(null);
+    }
+
+    /**
+     * Start a FanOut that executes calls of several endpoints in parallel with the given User in the User header.
+     * 
+     * @param user
+     * @return 
+     */
+    public FanOut fanOut(User user) {
+        return new FanOut(clientRegistry, asyncExecutor, user);
     }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.Configuration;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.X509KeyManager;
+
+/**
+ * This Provider holds the one SSLContext used by all secured endpoints.
+ * <p>The client certificate is read from the KeyStore given by the system properties
+ * javax.net.ssl.keyStore, javax.net.ssl.keyStorePassword and javax.net.ssl.keyStoreType (default JKS).
+ * The KeyStore file is checked every minute. A changed certificate is used for new handshakes without
+ * replacing the SSLContext, so pooled connections and cached TLS sessions stay valid.</p>
+ * <p>The TLS session cache is configured with the following Properties:</p>
+ * <ul>
+ * <li>restclient.ssl.sessionCacheSize - maximum number of cached sessions (default 1000)</li>
+ * <li>restclient.ssl.sessionTimeout - seconds a session can be resumed (default 3600)</li>
+ * </ul>
+ *
+ * @author Markus Pauer
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SslContextProvider {
+
+    private static final Logger LOGGER = Logger.getLogger(SslContextProvider.class.getName());
+
+    private static final int DEFAULT_SESSION_CACHE_SIZE = 1000;
+    private static final int DEFAULT_SESSION_TIMEOUT = 3600;
+
+    @Inject
+    private Configuration configuration;
+
+    private volatile SSLContext sslContext;
+    private ReloadingKeyManager keyManager;
+    private File keyStoreFile;
+    private long lastModified;
+
+    @PostConstruct
+    public void init() {
+        String path = System.getProperty("javax.net.ssl.keyStore");
+        if (path == null || System.getProperty("javax.net.ssl.keyStorePassword") == null) {
+            return;
+        }
+        keyStoreFile = new File(path);
+        try {
+            lastModified = keyStoreFile.lastModified();
+            keyManager = new ReloadingKeyManager(loadKeyManager());
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(new KeyManager[]{keyManager}, null, null);
+            SSLSessionContext sessionContext = context.getClientSessionContext();
+            sessionContext.setSessionCacheSize(configuration.getIntProperty("restclient.ssl.sessionCacheSize", DEFAULT_SESSION_CACHE_SIZE));
+            sessionContext.setSessionTimeout(configuration.getIntProperty("restclient.ssl.sessionTimeout", DEFAULT_SESSION_TIMEOUT));
+            sslContext = context;
+        } catch (GeneralSecurityException | IOException ex) {
+            LOGGER.log(Level.SEVERE, "KeyStore {0} not loaded: {1}", new Object[]{path, ex.getLocalizedMessage()});
+        }
+    }
+
+    private X509KeyManager loadKeyManager() throws GeneralSecurityException, IOException {
+        char[] password = System.getProperty("javax.net.ssl.keyStorePassword").toCharArray();
+        KeyStore keyStore = KeyStore.getInstance(System.getProperty("javax.net.ssl.keyStoreType", "JKS"));
+        try (InputStream is = new FileInputStream(keyStoreFile)) {
+            keyStore.load(is, password);
+        }
+        KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore, password);
+        for (KeyManager manager : factory.getKeyManagers()) {
+            if (manager instanceof X509KeyManager) {
+                return (X509KeyManager) manager;
+            }
+        }
+        throw new GeneralSecurityException("No X509 KeyManager for " + keyStoreFile);
+    }
+
+    /**
+     * Load the KeyStore again if its file has changed.
+     */
+    @Schedule(hour = "*", minute = "*", second = "15", persistent = false)
+    public synchronized void checkKeyStore() {
+        if (keyManager == null || keyStoreFile.lastModified() == lastModified) {
+            return;
+        }
+        try {
+            keyManager.setDelegate(loadKeyManager());
+            lastModified = keyStoreFile.lastModified();
+            LOGGER.log(Level.INFO, "KeyStore {0} reloaded", keyStoreFile);
+        } catch (GeneralSecurityException | IOException ex) {
+            LOGGER.log(Level.SEVERE, "KeyStore {0} not reloaded: {1}", new Object[]{keyStoreFile, ex.getLocalizedMessage()});
+        }
+    }
+
+    /**
+     * Get the SSLContext for secured endpoints.
+     *
+     * @return SSLContext or null if no KeyStore is configured
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.model.User;
+
+/**
+ * This Context binds the {@link User} of the current call to the calling thread.
+ * <p>The {@link UserHeaderRequestFilter} of a shared proxy reads the User from here,
+ * so the same proxy can be used for every User.</p>
+ *
+ * @author Markus Pauer
+ */
+public final class UserContext {
+
+    private static final ThreadLocal<User> CURRENT = new ThreadLocal<>();
+
+    private UserContext() {
+    }
+
+    /**
+     * Get the User bound to the current thread.
+     *
+     * @return User or null
+     */
+    public static User getUser() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind the User to the current thread.
+     *
+     * @param user - User or null to remove the binding
+     * @return the previously bound User, which should be restored afterwards
+     */
+    public static User setUser(User user) {
+        User previous = CURRENT.get();
+        if (user == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(user);
+        }
+        return previous;
+    }
+
+}
@@ -29,13 +29,23 @@ public class UserHeaderRequestFilter implements ClientRequestFilter {
 
     private final User user;
 
+    /**
+     * Creates a Filter that sends the User bound to the {@link UserContext}.
+     */
+    public UserHeaderRequestFilter() {
+        this(null);
+    }
+
     public UserHeaderRequestFilter(User user) {
         this.user = user;
     }
 
     @Override
     public void filter(ClientRequestContext requestContext) throws IOException {
-        requestContext.getHeaders().add("User", user.encodeUser());
+        User current = user != null ? user : UserContext.getUser();
+        if (current != null) {
+            requestContext.getHeaders().add("User", current.encodeUser());
+        }
     }
     
 }
@@ -16,9 +16,12 @@
  */
 package de.beit.jee.rest;
 
+import de.beit.jee.rest.resilience.CallRejectedException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.ResponseProcessingException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -44,4 +47,50 @@ public class WebApplicationExceptionMapper implements ExceptionMapper<WebApplica
         return exception.getResponse();
     }
 
+    /**
+     * Check if a failed call shows that the endpoint is unhealthy: I/O errors, timeouts and server errors.
+     * Client errors and responses that could not be read do not count.
+     *
+     * @param exception - exception of the call
+     * @return true if the call failed because of the endpoint
+     */
+    public static boolean isFailure(Throwable exception) {
+        if (exception instanceof WebApplicationException) {
+            return isFailure(((WebApplicationException) exception).getResponse().getStatus());
+        }
+        return exception instanceof ProcessingException
+                && !(exception instanceof ResponseProcessingException)
+                && !(exception instanceof CallRejectedException);
+    }
+
+    /**
+     * @param status - HTTP status
+     * @return true for server errors (5xx)
+     */
+    public static boolean isFailure(int status) {
+        return status >= 500 && status < 600;
+    }
+
+    /**
+     * Check if a failed call may succeed when it is repeated: I/O errors, timeouts and the status codes
+     * 502, 503 and 504.
+     *
+     * @param exception - exception of the call
+     * @return true if the call can be repeated
+     */
+    public static boolean isRetriable(Throwable exception) {
+        if (exception instanceof WebApplicationException) {
+            return isRetriable(((WebApplicationException) exception).getResponse().getStatus());
+        }
+        return isFailure(exception);
+    }
+
+    /**
+     * @param status - HTTP status
+     * @return true for Bad Gateway, Service Unavailable and Gateway Timeout
+     */
+    public static boolean isRetriable(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
 }
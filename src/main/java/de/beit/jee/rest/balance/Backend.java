@@ -0,0 +1,143 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.balance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One URL of a load balanced endpoint with its outstanding calls, latency and health.
+ * <p>The latency is a peak-sensitive exponentially weighted moving average: a slower call raises it at once,
+ * faster calls lower it with a decay time of {@link #DECAY_NANOS}.</p>
+ *
+ * @author Markus Pauer
+ */
+public class Backend {
+
+    private static final Logger LOGGER = Logger.getLogger(Backend.class.getName());
+
+    static final long DECAY_NANOS = 10000000000L;
+    private static final int MAX_EJECTION_FACTOR = 10;
+
+    private final String url;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private double latency;
+    private long latencyTime = System.nanoTime();
+    private volatile boolean healthy = true;
+    private volatile long ejectedUntil;
+    private volatile int ejections;
+
+    Backend(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return latency average in nanoseconds
+     */
+    public synchronized double getLatency() {
+        return latency;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public boolean isEjected() {
+        return ejectedUntil - System.nanoTime() > 0;
+    }
+
+    boolean isAvailable() {
+        return healthy && !isEjected();
+    }
+
+    /**
+     * @return expected cost of another call for the EWMA strategy
+     */
+    synchronized double getCost() {
+        return (latency + 1) * (outstanding.get() + 1);
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Forget a call that was aborted by the client, it tells nothing about the Backend.
+     */
+    void cancelled() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Record the outcome of a call and eject the Backend after too many consecutive failures.
+     *
+     * @param nanos - duration of the call
+     * @param failure - true if the call failed
+     * @param ejectAfter - consecutive failures that eject the Backend, 0 to never eject
+     * @param ejectDuration - milliseconds of the first ejection, repeated ejections last longer
+     */
+    void finished(long nanos, boolean failure, int ejectAfter, long ejectDuration) {
+        outstanding.decrementAndGet();
+        updateLatency(nanos);
+        if (!failure) {
+            consecutiveFailures.set(0);
+            ejections = 0;
+            return;
+        }
+        if (ejectAfter > 0 && consecutiveFailures.incrementAndGet() >= ejectAfter && !isEjected()) {
+            consecutiveFailures.set(0);
+            int factor = Math.min(++ejections, MAX_EJECTION_FACTOR);
+            ejectedUntil = System.nanoTime() + factor * ejectDuration * 1000000L;
+            LOGGER.log(Level.WARNING, "Backend {0} ejected for {1} ms after {2} failures",
+                    new Object[]{url, factor * ejectDuration, ejectAfter});
+        }
+    }
+
+    private synchronized void updateLatency(long nanos) {
+        long now = System.nanoTime();
+        if (nanos > latency) {
+            latency = nanos;
+        } else {
+            double weight = Math.exp(-(now - latencyTime) / (double) DECAY_NANOS);
+            latency = latency * weight + nanos * (1 - weight);
+        }
+        latencyTime = now;
+    }
+
+    void setHealthy(boolean healthy) {
+        if (this.healthy != healthy) {
+            LOGGER.log(healthy ? Level.INFO : Level.WARNING, "Backend {0} is {1}", new Object[]{url, healthy ? "healthy" : "unhealthy"});
+        }
+        this.healthy = healthy;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.balance;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import de.beit.jee.rest.WebApplicationExceptionMapper;
+import de.beit.jee.rest.resilience.HedgingInterceptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+
+/**
+ * This Interceptor spreads the calls of an endpoint over several URLs.
+ * <p>Strategies:</p>
+ * <ul>
+ * <li>ROUND_ROBIN - the URLs in turn</li>
+ * <li>LEAST_OUTSTANDING - the one of two random URLs with fewer running calls</li>
+ * <li>EWMA - the one of two random URLs with the lower product of latency average and running calls</li>
+ * </ul>
+ * <p>A URL is ejected for a while after consecutive failures, and skipped while its health check fails.
+ * If no URL is available all of them are used. The chosen URL is applied to the request by the
+ * {@link LoadBalancingFilter}.</p>
+ *
+ * @author Markus Pauer
+ */
+public class LoadBalancer implements EndpointInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadBalancer.class.getName());
+
+    static final ThreadLocal<Backend> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Set<String>> TRIED_URLS = new ThreadLocal<>();
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_OUTSTANDING, EWMA
+    }
+
+    private final String name;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<Backend> backends = Collections.emptyList();
+    private volatile Strategy strategy = Strategy.ROUND_ROBIN;
+    private volatile int ejectAfter;
+    private volatile long ejectDuration;
+    private volatile long lastHealthCheck;
+
+    public LoadBalancer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Set the URLs and settings. Backends of URLs that are kept keep their statistics.
+     *
+     * @param urls - URLs of the endpoint
+     * @param strategy - balancing strategy
+     * @param ejectAfter - consecutive failures that eject a URL, 0 to never eject
+     * @param ejectDuration - milliseconds a URL is ejected the first time
+     */
+    public synchronized void configure(List<String> urls, Strategy strategy, int ejectAfter, long ejectDuration) {
+        Map<String, Backend> current = new HashMap<>();
+        for (Backend backend : backends) {
+            current.put(backend.getUrl(), backend);
+        }
+        List<Backend> updated = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            Backend backend = current.get(url);
+            updated.add(backend != null ? backend : new Backend(url));
+        }
+        if (!current.keySet().equals(new HashSet<>(urls))) {
+            LOGGER.log(Level.INFO, "Endpoint {0} balanced over {1}", new Object[]{name, urls});
+        }
+        this.backends = Collections.unmodifiableList(updated);
+        this.strategy = strategy;
+        this.ejectAfter = ejectAfter;
+        this.ejectDuration = ejectDuration;
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        Backend backend = choose();
+        Backend outer = CURRENT.get();
+        CURRENT.set(backend);
+        backend.started();
+        long start = System.nanoTime();
+        boolean failure = true;
+        try {
+            Object result = invocation.proceed();
+            failure = result instanceof Response && WebApplicationExceptionMapper.isFailure(((Response) result).getStatus());
+            return result;
+        } catch (Exception ex) {
+            failure = WebApplicationExceptionMapper.isFailure(ex);
+            throw ex;
+        } finally {
+            if (HedgingInterceptor.isCancelled()) {
+                backend.cancelled();
+            } else {
+                backend.finished(System.nanoTime() - start, failure, ejectAfter, ejectDuration);
+            }
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Share the URLs chosen for the attempts of a call, so further attempts of the same call in the current
+     * thread choose another URL while one is left.
+     *
+     * @param urls - URLs tried by the call, null to stop sharing
+     */
+    public static void setTriedUrls(Set<String> urls) {
+        if (urls == null) {
+            TRIED_URLS.remove();
+        } else {
+            TRIED_URLS.set(urls);
+        }
+    }
+
+    Backend choose() {
+        Set<String> tried = TRIED_URLS.get();
+        if (tried == null) {
+            return choose(available(backends));
+        }
+        Backend backend = choose(untried(available(backends), tried));
+        tried.add(backend.getUrl());
+        return backend;
+    }
+
+    private Backend choose(List<Backend> candidates) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        switch (strategy) {
+            case LEAST_OUTSTANDING:
+            case EWMA:
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(candidates.size());
+                int second = random.nextInt(candidates.size() - 1);
+                Backend a = candidates.get(first);
+                Backend b = candidates.get(second >= first ? second + 1 : second);
+                if (strategy == Strategy.EWMA) {
+                    return a.getCost() <= b.getCost() ? a : b;
+                }
+                return a.getOutstanding() <= b.getOutstanding() ? a : b;
+            default:
+                return candidates.get((next.getAndIncrement() & Integer.MAX_VALUE) % candidates.size());
+        }
+    }
+
+    private static List<Backend> untried(List<Backend> candidates, Set<String> tried) {
+        List<Backend> untried = new ArrayList<>(candidates.size());
+        for (Backend backend : candidates) {
+            if (!tried.contains(backend.getUrl())) {
+                untried.add(backend);
+            }
+        }
+        return untried.isEmpty() ? candidates : untried;
+    }
+
+    private static List<Backend> available(List<Backend> all) {
+        int count = 0;
+        for (Backend backend : all) {
+            if (backend.isAvailable()) {
+                count++;
+            }
+        }
+        if (count == all.size() || count == 0) {
+            return all;
+        }
+        List<Backend> available = new ArrayList<>(count);
+        for (Backend backend : all) {
+            if (backend.isAvailable()) {
+                available.add(backend);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Check the health of all URLs if the interval has passed since the last check.
+     * <p>A URL is healthy if a GET of its health path answers with a 2xx status.</p>
+     *
+     * @param client - client of the endpoint
+     * @param path - health path relative to the URLs
+     * @param interval - milliseconds between two checks
+     * @param executor - executor of the checks
+     */
+    public void checkHealth(final Client client, final String path, long interval, Executor executor) {
+        long now = System.nanoTime();
+        if (now - lastHealthCheck < TimeUnit.MILLISECONDS.toNanos(interval)) {
+            return;
+        }
+        lastHealthCheck = now;
+        for (final Backend backend : backends) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    backend.setHealthy(isHealthy(client, backend.getUrl(), path));
+                }
+            });
+        }
+    }
+
+    private static boolean isHealthy(Client client, String url, String path) {
+        try {
+            Response response = client.target(url).path(path).request().get();
+            try {
+                return response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+            } finally {
+                response.close();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Health check of {0} failed: {1}", new Object[]{url, ex.getLocalizedMessage()});
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.balance;
+
+import java.io.IOException;
+import java.net.URI;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+
+/**
+ * This Filter sends a request to the URL chosen by the {@link LoadBalancer} of the call.
+ * <p>The proxy of the endpoint is built for the first URL, this prefix of the request URI is replaced.</p>
+ *
+ * @author Markus Pauer
+ */
+public class LoadBalancingFilter implements ClientRequestFilter {
+
+    private final String baseUrl;
+
+    /**
+     * Creates a Filter.
+     *
+     * @param baseUrl - URL the proxy was built for
+     */
+    public LoadBalancingFilter(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        Backend backend = LoadBalancer.CURRENT.get();
+        if (backend == null || backend.getUrl().equals(baseUrl)) {
+            return;
+        }
+        String uri = requestContext.getUri().toString();
+        if (uri.startsWith(baseUrl)) {
+            requestContext.setUri(URI.create(backend.getUrl() + uri.substring(baseUrl.length())));
+        }
+    }
+
+}
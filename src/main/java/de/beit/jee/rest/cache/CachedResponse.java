@@ -0,0 +1,155 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.cache;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * A cached response: status, headers, body and the information needed for revalidation.
+ *
+ * @author Markus Pauer
+ */
+final class CachedResponse {
+
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final ByteBuffer body;
+    private final String eTag;
+    private final String lastModified;
+    private final long size;
+    private volatile long expires;
+
+    CachedResponse(int status, Map<String, List<String>> headers, byte[] body, boolean offHeap, long expires) {
+        this.status = status;
+        this.headers = copy(headers);
+        if (offHeap) {
+            this.body = ByteBuffer.allocateDirect(body.length);
+            this.body.put(body).flip();
+        } else {
+            this.body = ByteBuffer.wrap(body);
+        }
+        this.eTag = first(headers, HttpHeaders.ETAG);
+        this.lastModified = first(headers, HttpHeaders.LAST_MODIFIED);
+        this.expires = expires;
+        long headerSize = 0;
+        for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                headerSize += 2 * (header.getKey().length() + value.length());
+            }
+        }
+        this.size = ENTRY_OVERHEAD + headerSize + body.length;
+    }
+
+    private static Map<String, List<String>> copy(Map<String, List<String>> headers) {
+        Map<String, List<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            copy.put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+        return copy;
+    }
+
+    static String first(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    boolean isFresh(long now) {
+        return now < expires;
+    }
+
+    boolean isRevalidatable() {
+        return eTag != null || lastModified != null;
+    }
+
+    void setExpires(long expires) {
+        this.expires = expires;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    InputStream openBody() {
+        return new ByteBufferInputStream(body.duplicate());
+    }
+
+    Response toResponse() {
+        Response.ResponseBuilder builder = Response.status(status);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+        return builder.entity(openBody()).build();
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+    }
+
+}
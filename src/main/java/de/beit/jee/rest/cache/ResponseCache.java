@@ -0,0 +1,210 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This Cache stores responses of GET requests in a size-bounded LRU store.
+ * <p>The store is split into segments with their own lock and their own share of the memory limit,
+ * so concurrent requests of different URIs do not contend. The bodies can be kept off-heap.</p>
+ *
+ * @author Markus Pauer
+ */
+public class ResponseCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final boolean offHeap;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a Cache.
+     *
+     * @param maxBytes - memory limit of all entries in bytes
+     * @param maxEntryBytes - memory limit of a single entry in bytes
+     * @param offHeap - keep the bodies in direct buffers outside of the heap
+     */
+    public ResponseCache(long maxBytes, long maxEntryBytes, boolean offHeap) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes / SEGMENTS);
+        this.offHeap = offHeap;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS);
+        }
+    }
+
+    private Segment segment(String uri) {
+        int hash = uri.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private static String key(String uri, String variant) {
+        return uri + '\n' + variant;
+    }
+
+    CachedResponse get(String uri, String variant) {
+        return segment(uri).get(key(uri, variant));
+    }
+
+    void put(String uri, String variant, CachedResponse response) {
+        if (response.getSize() <= maxEntryBytes) {
+            segment(uri).put(key(uri, variant), response);
+        }
+    }
+
+    /**
+     * Remove all variants of the URI, e.g. after it has been modified.
+     *
+     * @param uri - URI of the resource
+     */
+    void invalidate(String uri) {
+        segment(uri).removeAll(uri + '\n');
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void revalidated() {
+        revalidations.incrementAndGet();
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getSizeInBytes() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.getBytes();
+        }
+        return size;
+    }
+
+    public int getEntryCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            count += segment.getCount();
+        }
+        return count;
+    }
+
+    private class Segment {
+
+        private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxBytes;
+        private long bytes;
+
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized CachedResponse get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, CachedResponse response) {
+            CachedResponse previous = entries.put(key, response);
+            if (previous != null) {
+                bytes -= previous.getSize();
+            }
+            bytes += response.getSize();
+            Iterator<CachedResponse> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().getSize();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        synchronized void removeAll(String prefix) {
+            Iterator<Map.Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, CachedResponse> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    bytes -= entry.getValue().getSize();
+                    iterator.remove();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            bytes = 0;
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+
+        synchronized int getCount() {
+            return entries.size();
+        }
+
+    }
+
+}
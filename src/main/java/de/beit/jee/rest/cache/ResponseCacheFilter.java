@@ -0,0 +1,211 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * This Filter answers GET requests from the {@link ResponseCache}.
+ * <p>Fresh entries are returned without a request. Stale entries with an ETag or Last-Modified header
+ * are revalidated with If-None-Match and If-Modified-Since. The freshness is taken from the
+ * Cache-Control and Expires headers of the response.</p>
+ * <p>The variants of a resource are distinguished by the Accept and User headers, so this Filter
+ * must run after the {@link de.beit.jee.rest.UserHeaderRequestFilter}.</p>
+ *
+ * @author Markus Pauer
+ */
+public class ResponseCacheFilter implements ClientRequestFilter, ClientResponseFilter {
+
+    private static final String ENTRY = ResponseCacheFilter.class.getName() + ".entry";
+    private static final String VARIANT = ResponseCacheFilter.class.getName() + ".variant";
+    private static final String HIT = ResponseCacheFilter.class.getName() + ".hit";
+
+    private final ResponseCache cache;
+
+    public ResponseCacheFilter(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        if (!HttpMethod.GET.equals(requestContext.getMethod())) {
+            return;
+        }
+        String variant = variant(requestContext);
+        requestContext.setProperty(VARIANT, variant);
+        CachedResponse entry = cache.get(requestContext.getUri().toString(), variant);
+        if (entry == null) {
+            cache.miss();
+            return;
+        }
+        if (entry.isFresh(System.currentTimeMillis())) {
+            cache.hit();
+            requestContext.setProperty(HIT, Boolean.TRUE);
+            requestContext.abortWith(entry.toResponse());
+            return;
+        }
+        if (entry.isRevalidatable()) {
+            requestContext.setProperty(ENTRY, entry);
+            if (entry.getETag() != null) {
+                requestContext.getHeaders().putSingle(HttpHeaders.IF_NONE_MATCH, entry.getETag());
+            }
+            if (entry.getLastModified() != null) {
+                requestContext.getHeaders().putSingle(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified());
+            }
+        } else {
+            cache.miss();
+        }
+    }
+
+    private static String variant(ClientRequestContext requestContext) {
+        return requestContext.getHeaderString(HttpHeaders.ACCEPT) + '\n' + requestContext.getHeaderString("User");
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+        String uri = requestContext.getUri().toString();
+        if (!HttpMethod.GET.equals(requestContext.getMethod())) {
+            if (responseContext.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                cache.invalidate(uri);
+            }
+            return;
+        }
+        if (requestContext.getProperty(HIT) != null) {
+            return;
+        }
+        String variant = (String) requestContext.getProperty(VARIANT);
+        CachedResponse entry = (CachedResponse) requestContext.getProperty(ENTRY);
+        long now = System.currentTimeMillis();
+        if (entry != null && responseContext.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            cache.revalidated();
+            entry.setExpires(expires(responseContext.getHeaders(), now));
+            responseContext.setStatus(Response.Status.OK.getStatusCode());
+            for (Map.Entry<String, List<String>> header : entry.getHeaders().entrySet()) {
+                if (!responseContext.getHeaders().containsKey(header.getKey())) {
+                    responseContext.getHeaders().put(header.getKey(), header.getValue());
+                }
+            }
+            responseContext.setEntityStream(entry.openBody());
+            return;
+        }
+        if (entry != null) {
+            cache.miss();
+        }
+        if (responseContext.getStatus() == Response.Status.OK.getStatusCode() && responseContext.hasEntity() && isStorable(responseContext.getHeaders())) {
+            byte[] body = buffer(responseContext, cache.getMaxEntryBytes());
+            if (body == null) {
+                return;
+            }
+            CachedResponse response = new CachedResponse(responseContext.getStatus(), responseContext.getHeaders(), body, cache.isOffHeap(), expires(responseContext.getHeaders(), now));
+            if (response.isFresh(now) || response.isRevalidatable()) {
+                cache.put(uri, variant, response);
+            }
+        }
+    }
+
+    private boolean isStorable(Map<String, List<String>> headers) {
+        String cacheControl = CachedResponse.first(headers, HttpHeaders.CACHE_CONTROL);
+        if (cacheControl != null && cacheControl.toLowerCase(Locale.ENGLISH).contains("no-store")) {
+            return false;
+        }
+        if ("*".equals(CachedResponse.first(headers, HttpHeaders.VARY))) {
+            return false;
+        }
+        String contentLength = CachedResponse.first(headers, HttpHeaders.CONTENT_LENGTH);
+        try {
+            return contentLength == null || Long.parseLong(contentLength) <= cache.getMaxEntryBytes();
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Determine until when the response is fresh from its Cache-Control and Expires headers.
+     */
+    static long expires(Map<String, List<String>> headers, long now) {
+        String cacheControl = CachedResponse.first(headers, HttpHeaders.CACHE_CONTROL);
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.ENGLISH).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache")) {
+                    return now;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        return now + 1000L * Long.parseLong(directive.substring(8).trim());
+                    } catch (NumberFormatException ex) {
+                        return now;
+                    }
+                }
+            }
+        }
+        String expires = CachedResponse.first(headers, HttpHeaders.EXPIRES);
+        if (expires != null) {
+            Date expiresDate = DateUtils.parseDate(expires);
+            if (expiresDate == null) {
+                return now;
+            }
+            String date = CachedResponse.first(headers, HttpHeaders.DATE);
+            Date responseDate = date != null ? DateUtils.parseDate(date) : null;
+            return now + expiresDate.getTime() - (responseDate != null ? responseDate.getTime() : now);
+        }
+        return now;
+    }
+
+    /**
+     * Buffer the body as long as it fits into a cache entry.
+     * <p>A body of unknown length that turns out to be too large is not buffered further:
+     * the bytes read so far are put in front of the rest of the stream, which is handed
+     * to the caller unchanged.</p>
+     *
+     * @return the body or null if it is larger than maxBytes
+     */
+    static byte[] buffer(ClientResponseContext responseContext, long maxBytes) throws IOException {
+        InputStream in = responseContext.getEntityStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer, 0, (int) Math.min(buffer.length, maxBytes + 1 - out.size()))) != -1) {
+            out.write(buffer, 0, count);
+            if (out.size() > maxBytes) {
+                responseContext.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), in));
+                return null;
+            }
+        }
+        in.close();
+        byte[] body = out.toByteArray();
+        responseContext.setEntityStream(new ByteArrayInputStream(body));
+        return body;
+    }
+
+}
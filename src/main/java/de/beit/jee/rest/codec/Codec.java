@@ -0,0 +1,50 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * A wire format for request and response bodies that replaces JSON on endpoints configured with
+ * &lt;Interface&gt;.codec.
+ * <p>Implementations must be thread-safe. Schema-based formats implement this interface and are configured
+ * with their class name, they need a public constructor without parameters.</p>
+ *
+ * @author Markus Pauer
+ */
+public interface Codec {
+
+    /**
+     * @return media type of the encoded bodies, sent as Accept and Content-Type
+     */
+    MediaType getMediaType();
+
+    /**
+     * @param type - class of a request or response body
+     * @return true if bodies of the class can be encoded and decoded
+     */
+    boolean canEncode(Class<?> type);
+
+    void write(Object value, Type genericType, OutputStream out) throws IOException;
+
+    Object read(Class<?> type, Type genericType, InputStream in) throws IOException;
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import java.io.IOException;
+import java.util.Iterator;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * This Filter asks for the format of the {@link Codec} negotiated by the {@link CodecNegotiation} of the call.
+ * <p>The Codec's media type is accepted before JSON, so backends that do not know it answer with JSON.
+ * A JSON request body is sent in the Codec's format.</p>
+ *
+ * @author Markus Pauer
+ */
+public class CodecFilter implements ClientRequestFilter {
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        CodecNegotiation.Mode mode = CodecNegotiation.CURRENT.get();
+        if (mode == null) {
+            return;
+        }
+        MediaType mediaType = mode.getCodec().getMediaType();
+        if (mode.isDecodeResponse()) {
+            requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT, mediaType + ", " + MediaType.APPLICATION_JSON + ";q=0.5");
+        }
+        if (mode.isEncodeRequest() && requestContext.hasEntity() && !(requestContext.getEntity() instanceof Iterator)
+                && MediaType.APPLICATION_JSON_TYPE.isCompatible(requestContext.getMediaType())) {
+            requestContext.setEntity(requestContext.getEntity(), requestContext.getEntityAnnotations(), mediaType);
+        }
+    }
+
+}
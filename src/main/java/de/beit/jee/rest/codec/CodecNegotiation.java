@@ -0,0 +1,214 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.BeanParam;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.CookieParam;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.MatrixParam;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * This Interceptor negotiates a {@link Codec} instead of JSON for the methods of an endpoint that exchange
+ * JSON objects.
+ * <p>The {@link CodecFilter} then accepts the Codec's format and sends request bodies in it.
+ * If the backend answers 415 Unsupported Media Type or 406 Not Acceptable, the call is repeated with JSON
+ * and JSON is used for the fallback duration. Methods returning a {@link Response}, a String, a stream or an
+ * {@link Iterator} always use JSON.</p>
+ *
+ * @author Markus Pauer
+ */
+public class CodecNegotiation implements EndpointInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(CodecNegotiation.class.getName());
+
+    static final ThreadLocal<Mode> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final Codec codec;
+    private final long fallbackDuration;
+    private final Map<Method, Mode> modes;
+    private volatile long fallbackUntil;
+
+    /**
+     * Creates an Interceptor.
+     *
+     * @param type - endpoint interface
+     * @param codec - Codec preferred to JSON
+     * @param fallbackDuration - milliseconds JSON is used after the backend rejected the Codec
+     */
+    public CodecNegotiation(Class<?> type, Codec codec, long fallbackDuration) {
+        this.name = type.getName();
+        this.codec = codec;
+        this.fallbackDuration = fallbackDuration;
+        this.modes = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            Mode mode = createMode(type, method);
+            if (mode != null) {
+                modes.put(method, mode);
+            }
+        }
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        Mode mode = modes.get(invocation.getMethod());
+        if (mode == null || System.currentTimeMillis() < fallbackUntil) {
+            return invocation.proceed();
+        }
+        Mode outer = CURRENT.get();
+        CURRENT.set(mode);
+        try {
+            Object result = invocation.proceed();
+            if (!(result instanceof Response) || !isRejected(((Response) result).getStatus())) {
+                return result;
+            }
+            ((Response) result).close();
+        } catch (WebApplicationException ex) {
+            if (!isRejected(ex.getResponse().getStatus())) {
+                throw ex;
+            }
+            ex.getResponse().close();
+        } finally {
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+        fallbackUntil = System.currentTimeMillis() + fallbackDuration;
+        LOGGER.log(Level.INFO, "Endpoint {0} does not support {1}, using JSON for {2} s",
+                new Object[]{name, codec, TimeUnit.MILLISECONDS.toSeconds(fallbackDuration)});
+        return invocation.proceed();
+    }
+
+    private static boolean isRejected(int status) {
+        return status == Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode()
+                || status == Response.Status.NOT_ACCEPTABLE.getStatusCode();
+    }
+
+    /**
+     * @return Mode or null if the method exchanges no JSON objects
+     */
+    private Mode createMode(Class<?> type, Method method) {
+        Produces produces = method.isAnnotationPresent(Produces.class)
+                ? method.getAnnotation(Produces.class) : type.getAnnotation(Produces.class);
+        Consumes consumes = method.isAnnotationPresent(Consumes.class)
+                ? method.getAnnotation(Consumes.class) : type.getAnnotation(Consumes.class);
+        boolean decodeResponse = produces != null && isJson(produces.value()) && isObject(method.getReturnType());
+        Class<?> entityType = getEntityType(method);
+        boolean encodeRequest = consumes != null && isJson(consumes.value()) && entityType != null && isObject(entityType);
+        return decodeResponse || encodeRequest ? new Mode(codec, decodeResponse, encodeRequest) : null;
+    }
+
+    private static boolean isJson(String[] mediaTypes) {
+        for (String value : mediaTypes) {
+            for (String mediaType : value.split(",")) {
+                if (MediaType.APPLICATION_JSON_TYPE.isCompatible(MediaType.valueOf(mediaType.trim()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isObject(Class<?> type) {
+        return type != void.class && type != Void.class && type != String.class && type != byte[].class
+                && !Response.class.isAssignableFrom(type) && !InputStream.class.isAssignableFrom(type)
+                && !Reader.class.isAssignableFrom(type) && !Iterator.class.isAssignableFrom(type)
+                && !StreamingOutput.class.isAssignableFrom(type) && codec.canEncode(type);
+    }
+
+    /**
+     * @return type of the parameter without JAX-RS annotation or null
+     */
+    private static Class<?> getEntityType(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            if (!isBound(annotations[i])) {
+                return method.getParameterTypes()[i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBound(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            Class<? extends Annotation> type = annotation.annotationType();
+            if (type == PathParam.class || type == QueryParam.class || type == HeaderParam.class || type == FormParam.class
+                    || type == MatrixParam.class || type == CookieParam.class || type == BeanParam.class || type == Context.class) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * What a call of a method exchanges in the format of the Codec.
+     */
+    static final class Mode {
+
+        private final Codec codec;
+        private final boolean decodeResponse;
+        private final boolean encodeRequest;
+
+        Mode(Codec codec, boolean decodeResponse, boolean encodeRequest) {
+            this.codec = codec;
+            this.decodeResponse = decodeResponse;
+            this.encodeRequest = encodeRequest;
+        }
+
+        Codec getCodec() {
+            return codec;
+        }
+
+        boolean isDecodeResponse() {
+            return decodeResponse;
+        }
+
+        boolean isEncodeRequest() {
+            return encodeRequest;
+        }
+
+    }
+
+}
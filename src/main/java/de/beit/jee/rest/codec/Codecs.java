@@ -0,0 +1,93 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * This Registry creates the Codecs by name and shares them between the endpoints.
+ * <p>Names:</p>
+ * <ul>
+ * <li>smile - Jackson Smile, application/x-jackson-smile</li>
+ * <li>cbor - CBOR, application/cbor</li>
+ * <li>the class name of a {@link Codec} implementation</li>
+ * </ul>
+ * <p>The Jackson formats are loaded when they are used, so applications may exclude the modules they do not need.</p>
+ *
+ * @author Markus Pauer
+ */
+public final class Codecs {
+
+    private static final Logger LOGGER = Logger.getLogger(Codecs.class.getName());
+
+    public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+    public static final MediaType CBOR = new MediaType("application", "cbor");
+
+    private static final ConcurrentMap<String, Codec> CODECS = new ConcurrentHashMap<>();
+
+    private Codecs() {
+    }
+
+    /**
+     * Get the Codec with the name.
+     *
+     * @param name - smile, cbor or class name of a Codec
+     * @return shared Codec or null if it is not available
+     */
+    public static Codec get(String name) {
+        String key = name.trim();
+        Codec codec = CODECS.get(key);
+        if (codec == null) {
+            codec = create(key);
+            if (codec == null) {
+                return null;
+            }
+            Codec existing = CODECS.putIfAbsent(key, codec);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return codec;
+    }
+
+    private static Codec create(String name) {
+        try {
+            switch (name.toLowerCase(Locale.ENGLISH)) {
+                case "smile":
+                    return new JacksonCodec(SMILE, newFactory("com.fasterxml.jackson.dataformat.smile.SmileFactory"));
+                case "cbor":
+                    return new JacksonCodec(CBOR, newFactory("com.fasterxml.jackson.dataformat.cbor.CBORFactory"));
+                default:
+                    return Class.forName(name, true, Codecs.class.getClassLoader()).asSubclass(Codec.class).newInstance();
+            }
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError ex) {
+            LOGGER.log(Level.WARNING, "Codec {0} is not available, using JSON: {1}", new Object[]{name, ex.toString()});
+            return null;
+        }
+    }
+
+    private static JsonFactory newFactory(String className) throws ReflectiveOperationException {
+        return Class.forName(className, true, Codecs.class.getClassLoader()).asSubclass(JsonFactory.class).newInstance();
+    }
+
+}
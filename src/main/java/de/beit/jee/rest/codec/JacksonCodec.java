@@ -0,0 +1,102 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * A Codec for the binary formats of Jackson, e.g. Smile or CBOR.
+ * <p>Like the JSON provider it honours Jackson and JAXB annotations, so the same classes are bound.
+ * Readers and writers are cached per type, and the parsers and generators of the shared factory take
+ * their buffers from the per-thread buffer recycler of Jackson instead of allocating them for every body.</p>
+ *
+ * @author Markus Pauer
+ */
+public class JacksonCodec implements Codec {
+
+    private final MediaType mediaType;
+    private final ObjectMapper mapper;
+    private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a Codec.
+     *
+     * @param mediaType - media type of the format
+     * @param factory - Jackson factory of the format
+     */
+    public JacksonCodec(MediaType mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        // JAX-RS providers must not close the entity streams
+        factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.mapper = new ObjectMapper(factory);
+        mapper.setAnnotationIntrospector(AnnotationIntrospector.pair(new JacksonAnnotationIntrospector(),
+                new JaxbAnnotationIntrospector(mapper.getTypeFactory())));
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public boolean canEncode(Class<?> type) {
+        return true;
+    }
+
+    @Override
+    public void write(Object value, Type genericType, OutputStream out) throws IOException {
+        ObjectWriter writer = writers.get(genericType);
+        if (writer == null) {
+            writer = mapper.writerFor(mapper.getTypeFactory().constructType(genericType));
+            writers.putIfAbsent(genericType, writer);
+        }
+        writer.writeValue(out, value);
+    }
+
+    @Override
+    public Object read(Class<?> type, Type genericType, InputStream in) throws IOException {
+        ObjectReader reader = readers.get(genericType);
+        if (reader == null) {
+            reader = mapper.readerFor(mapper.getTypeFactory().constructType(genericType));
+            readers.putIfAbsent(genericType, reader);
+        }
+        return reader.readValue(in);
+    }
+
+    @Override
+    public String toString() {
+        return mediaType.toString();
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.compression;
+
+import de.beit.jee.rest.metrics.CompressionMetrics;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * This Stream compresses a request body with gzip or deflate once it is larger than the threshold.
+ * <p>The first threshold bytes are buffered. If the body ends before, it is written uncompressed.
+ * Otherwise the Content-Encoding header is set and everything is compressed with a pooled Deflater.</p>
+ *
+ * @author Markus Pauer
+ */
+final class CompressingOutputStream extends OutputStream {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final String encoding;
+    private final boolean gzip;
+    private final int level;
+    private final MultivaluedMap<String, Object> headers;
+    private final CompressionMetrics metrics;
+
+    private byte[] pending;
+    private int pendingCount;
+    private Deflater deflater;
+    private byte[] buffer;
+    private CRC32 crc;
+    private long bytes;
+    private long compressedBytes;
+    private long nanos;
+    private boolean finished;
+
+    /**
+     * Creates a Stream.
+     *
+     * @param out - stream of the request body
+     * @param encoding - gzip or deflate
+     * @param level - compression level
+     * @param threshold - smallest body in bytes that is compressed
+     * @param headers - request headers that get the Content-Encoding
+     * @param metrics - metrics of the endpoint
+     */
+    CompressingOutputStream(OutputStream out, String encoding, int level, int threshold,
+            MultivaluedMap<String, Object> headers, CompressionMetrics metrics) {
+        this.out = out;
+        this.encoding = encoding;
+        this.gzip = !"deflate".equals(encoding);
+        this.level = level;
+        this.headers = headers;
+        this.metrics = metrics;
+        this.pending = new byte[Math.max(threshold, 0)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (deflater == null) {
+            if (pendingCount + len < pending.length) {
+                System.arraycopy(b, off, pending, pendingCount, len);
+                pendingCount += len;
+                return;
+            }
+            start();
+        }
+        deflate(b, off, len);
+    }
+
+    private void start() throws IOException {
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        deflater = CodecPool.deflater(level, gzip);
+        buffer = new byte[BUFFER_SIZE];
+        if (gzip) {
+            crc = new CRC32();
+            out.write(GZIP_HEADER);
+            compressedBytes += GZIP_HEADER.length;
+        }
+        if (pendingCount > 0) {
+            deflate(pending, 0, pendingCount);
+        }
+        pending = null;
+    }
+
+    private void deflate(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+        bytes += len;
+        nanos += System.nanoTime() - start;
+    }
+
+    private void drain() throws IOException {
+        int count = deflater.deflate(buffer, 0, buffer.length);
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            compressedBytes += count;
+        }
+    }
+
+    /**
+     * Write the rest of the body and give the Deflater back to the pool.
+     *
+     * @throws IOException if the body could not be written
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (deflater == null) {
+            out.write(pending, 0, pendingCount);
+            metrics.addRequest(pendingCount, -1, 0);
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            if (gzip) {
+                writeInt((int) crc.getValue());
+                writeInt((int) deflater.getBytesRead());
+                compressedBytes += 8;
+            }
+            nanos += System.nanoTime() - start;
+            metrics.addRequest(bytes, compressedBytes, nanos);
+        } finally {
+            CodecPool.release(deflater, gzip);
+        }
+    }
+
+    /**
+     * Give the Deflater back to the pool after the body could not be written.
+     */
+    void abort() {
+        if (!finished) {
+            finished = true;
+            if (deflater != null) {
+                CodecPool.release(deflater, gzip);
+            }
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+}
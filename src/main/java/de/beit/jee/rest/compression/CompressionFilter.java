@@ -0,0 +1,113 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.compression;
+
+import de.beit.jee.rest.metrics.CompressionMetrics;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * This Filter compresses request bodies and decompresses responses of an endpoint.
+ * <p>Requests accept gzip and deflate. Request bodies of at least threshold bytes are compressed with the
+ * configured encoding. Streamed bodies (Iterator) have no known size and are always compressed.
+ * Compressed responses are decompressed while they are read.</p>
+ *
+ * @author Markus Pauer
+ */
+public class CompressionFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor {
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final String encoding;
+    private final int level;
+    private final int threshold;
+    private final CompressionMetrics metrics;
+
+    /**
+     * Creates a Filter.
+     *
+     * @param encoding - encoding of request bodies, gzip or deflate
+     * @param level - compression level from 1 (fast) to 9 (small)
+     * @param threshold - smallest request body in bytes that is compressed
+     * @param metrics - metrics of the endpoint
+     */
+    public CompressionFilter(String encoding, int level, int threshold, CompressionMetrics metrics) {
+        this.encoding = "deflate".equalsIgnoreCase(encoding) ? "deflate" : "gzip";
+        this.level = level;
+        this.threshold = threshold;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        if (requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING) == null) {
+            requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+        }
+        if (requestContext.getEntity() instanceof Iterator
+                && requestContext.getHeaderString(HttpHeaders.CONTENT_ENCODING) == null) {
+            // the headers of a streamed body are sent before the body is written
+            requestContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object contentEncoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null && !encoding.equals(contentEncoding)) {
+            context.proceed();
+            return;
+        }
+        CompressingOutputStream out = new CompressingOutputStream(context.getOutputStream(), encoding, level,
+                contentEncoding != null ? 0 : threshold, context.getHeaders(), metrics);
+        context.setOutputStream(out);
+        boolean written = false;
+        try {
+            context.proceed();
+            out.finish();
+            written = true;
+        } finally {
+            if (!written) {
+                out.abort();
+            }
+        }
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+        String contentEncoding = responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding == null || responseContext.getEntityStream() == null) {
+            return;
+        }
+        String value = contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+        boolean gzip = "gzip".equals(value) || "x-gzip".equals(value);
+        if (!gzip && !"deflate".equals(value)) {
+            return;
+        }
+        responseContext.setEntityStream(new DecompressingInputStream(responseContext.getEntityStream(), gzip, metrics));
+        responseContext.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        responseContext.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.compression;
+
+import de.beit.jee.rest.metrics.CompressionMetrics;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * This Stream decompresses a gzip or deflate response body with a pooled Inflater while it is read.
+ * <p>The Inflater goes back to the pool at the end of the body or when the Stream is closed.
+ * The gzip trailer is not verified.</p>
+ *
+ * @author Markus Pauer
+ */
+final class DecompressingInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+    private final boolean gzip;
+    private final CompressionMetrics metrics;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private Inflater inflater;
+    private boolean headerRead;
+    private long bytes;
+    private long compressedBytes;
+    private long nanos;
+
+    /**
+     * Creates a Stream.
+     *
+     * @param in - compressed response body
+     * @param gzip - true for gzip, false for deflate
+     * @param metrics - metrics of the endpoint
+     */
+    DecompressingInputStream(InputStream in, boolean gzip, CompressionMetrics metrics) {
+        this.in = in;
+        this.gzip = gzip;
+        this.metrics = metrics;
+        this.inflater = CodecPool.inflater(gzip);
+        this.headerRead = !gzip;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (inflater == null) {
+            return -1;
+        }
+        if (!headerRead) {
+            readGzipHeader();
+            headerRead = true;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                int count = inflater.inflate(b, off, len);
+                nanos += System.nanoTime() - start;
+                if (count > 0) {
+                    bytes += count;
+                    return count;
+                }
+                if (inflater.finished() || inflater.needsDictionary()) {
+                    end();
+                    return -1;
+                }
+                if (inflater.needsInput()) {
+                    int read = in.read(buffer, 0, buffer.length);
+                    if (read == -1) {
+                        throw new EOFException("Unexpected end of compressed body");
+                    }
+                    compressedBytes += read;
+                    inflater.setInput(buffer, 0, read);
+                }
+            }
+        } catch (DataFormatException ex) {
+            end();
+            throw new ZipException(ex.getMessage());
+        }
+    }
+
+    private void readGzipHeader() throws IOException {
+        if (readByte() != 0x1f || readByte() != 0x8b) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readByte();
+        skip(6);
+        if ((flags & FEXTRA) != 0) {
+            skip(readByte() | (readByte() << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte() != 0) {
+                // skip file name
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte() != 0) {
+                // skip comment
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            skip(2);
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of GZIP header");
+        }
+        compressedBytes++;
+        return b;
+    }
+
+    private void skip(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readByte();
+        }
+    }
+
+    private void end() {
+        if (inflater != null) {
+            CodecPool.release(inflater, gzip);
+            inflater = null;
+            metrics.addResponse(bytes, compressedBytes, nanos);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        end();
+        in.close();
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+/**
+ * The compression metrics of an endpoint interface: bytes before and after compression and the
+ * time spent in the Deflater and Inflater. A ratio of 0.2 means the compressed body has a fifth of the size.
+ *
+ * @author Markus Pauer
+ */
+public class CompressionMetrics implements CompressionMetricsMXBean {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final StripedCounter compressedRequests = new StripedCounter();
+    private final StripedCounter uncompressedRequests = new StripedCounter();
+    private final StripedCounter requestBytes = new StripedCounter();
+    private final StripedCounter compressedRequestBytes = new StripedCounter();
+    private final StripedCounter compressedResponses = new StripedCounter();
+    private final StripedCounter responseBytes = new StripedCounter();
+    private final StripedCounter compressedResponseBytes = new StripedCounter();
+    private final StripedCounter compressNanos = new StripedCounter();
+    private final StripedCounter decompressNanos = new StripedCounter();
+
+    /**
+     * Record a request body.
+     *
+     * @param bytes - size of the body
+     * @param compressedBytes - size of the compressed body, -1 if it was sent uncompressed
+     * @param nanos - time spent compressing
+     */
+    public void addRequest(long bytes, long compressedBytes, long nanos) {
+        if (compressedBytes < 0) {
+            uncompressedRequests.increment();
+            return;
+        }
+        compressedRequests.increment();
+        requestBytes.add(bytes);
+        compressedRequestBytes.add(compressedBytes);
+        compressNanos.add(nanos);
+    }
+
+    /**
+     * Record a compressed response body.
+     *
+     * @param bytes - size of the decompressed body
+     * @param compressedBytes - size of the received body
+     * @param nanos - time spent decompressing
+     */
+    public void addResponse(long bytes, long compressedBytes, long nanos) {
+        compressedResponses.increment();
+        responseBytes.add(bytes);
+        compressedResponseBytes.add(compressedBytes);
+        decompressNanos.add(nanos);
+    }
+
+    @Override
+    public long getCompressedRequests() {
+        return compressedRequests.sum();
+    }
+
+    @Override
+    public long getUncompressedRequests() {
+        return uncompressedRequests.sum();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    @Override
+    public long getCompressedRequestBytes() {
+        return compressedRequestBytes.sum();
+    }
+
+    @Override
+    public double getRequestRatio() {
+        return ratio(compressedRequestBytes.sum(), requestBytes.sum());
+    }
+
+    @Override
+    public long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public long getCompressedResponseBytes() {
+        return compressedResponseBytes.sum();
+    }
+
+    @Override
+    public double getResponseRatio() {
+        return ratio(compressedResponseBytes.sum(), responseBytes.sum());
+    }
+
+    @Override
+    public double getCompressMillis() {
+        return compressNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getDecompressMillis() {
+        return decompressNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    private static double ratio(long compressed, long uncompressed) {
+        return uncompressed == 0 ? 1 : (double) compressed / uncompressed;
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of one method of an endpoint interface: latency histogram, calls in flight,
+ * outcomes by status class and transferred bytes.
+ *
+ * @author Markus Pauer
+ */
+public class MethodMetrics implements MethodMetricsMXBean {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final String interfaceName;
+    private final String methodName;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final StripedCounter inFlight = new StripedCounter();
+    private final StripedCounter successes = new StripedCounter();
+    private final StripedCounter clientErrors = new StripedCounter();
+    private final StripedCounter serverErrors = new StripedCounter();
+    private final StripedCounter ioErrors = new StripedCounter();
+    private final StripedCounter requestBytes = new StripedCounter();
+    private final StripedCounter responseBytes = new StripedCounter();
+
+    MethodMetrics(Class<?> type, Method method) {
+        this.interfaceName = type.getName();
+        this.methodName = signature(method);
+    }
+
+    /**
+     * @return name and parameter types of the method, e.g. getCustomer(String), so overloaded methods are told apart
+     */
+    static String signature(Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(parameterTypes[i].getSimpleName());
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * Record the start of a call.
+     *
+     * @return start time for {@link #end(long, int)}
+     */
+    long begin() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the end of a call.
+     *
+     * @param start - start time returned by {@link #begin()}
+     * @param status - HTTP status or 0 if no response was received
+     */
+    void end(long start, int status) {
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        inFlight.decrement();
+        if (status == 0) {
+            ioErrors.increment();
+        } else if (status >= 500) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        } else {
+            successes.increment();
+        }
+    }
+
+    /**
+     * Record the end of a call that was aborted by the client.
+     */
+    void cancelled() {
+        inFlight.decrement();
+    }
+
+    void addRequestBytes(long bytes) {
+        requestBytes.add(bytes);
+    }
+
+    void addResponseBytes(long bytes) {
+        responseBytes.add(bytes);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    @Override
+    public String getMethodName() {
+        return methodName;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public long getClientErrors() {
+        return clientErrors.sum();
+    }
+
+    @Override
+    public long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    @Override
+    public long getIoErrors() {
+        return ioErrors.sum();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMean() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getPercentile(50) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return latency.getPercentile(90) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getPercentile(99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latency.getPercentile(99.9) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMax() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public String toString() {
+        return interfaceName + '.' + methodName;
+    }
+
+}
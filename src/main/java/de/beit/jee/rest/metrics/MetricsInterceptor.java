@@ -0,0 +1,90 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import de.beit.jee.rest.resilience.HedgingInterceptor;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.ResponseProcessingException;
+import javax.ws.rs.core.Response;
+
+/**
+ * This Interceptor records the latency and the outcome of every HTTP call in the {@link MethodMetrics}
+ * of the called method.
+ * <p>It runs last, so every retry is recorded and rejected calls are not. While the call runs its metrics
+ * are bound to the calling thread, so the {@link MetricsFilter} can add the transferred bytes.</p>
+ *
+ * @author Markus Pauer
+ */
+public class MetricsInterceptor implements EndpointInterceptor {
+
+    private static final ThreadLocal<MethodMetrics> CURRENT = new ThreadLocal<>();
+
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<Method, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    public MetricsInterceptor(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        MethodMetrics methodMetrics = metrics.get(invocation.getMethod());
+        if (methodMetrics == null) {
+            methodMetrics = registry.getMethodMetrics(invocation.getType(), invocation.getMethod());
+            metrics.put(invocation.getMethod(), methodMetrics);
+        }
+        MethodMetrics previous = CURRENT.get();
+        CURRENT.set(methodMetrics);
+        long start = methodMetrics.begin();
+        int status = 0;
+        try {
+            Object result = invocation.proceed();
+            status = result instanceof Response ? ((Response) result).getStatus() : Response.Status.OK.getStatusCode();
+            return result;
+        } catch (WebApplicationException ex) {
+            status = ex.getResponse().getStatus();
+            throw ex;
+        } catch (ResponseProcessingException ex) {
+            status = ex.getResponse().getStatus();
+            throw ex;
+        } finally {
+            if (HedgingInterceptor.isCancelled()) {
+                methodMetrics.cancelled();
+            } else {
+                methodMetrics.end(start, status);
+            }
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return metrics of the call running in this thread or null
+     */
+    static MethodMetrics current() {
+        return CURRENT.get();
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.http.pool.ConnPoolControl;
+
+/**
+ * This Registry holds the metrics of all endpoint methods and connection pools.
+ * <p>Every metric is registered as MXBean with the names
+ * de.beit.jee.rest:type=Endpoint,interface=&lt;Interface&gt;,method=&lt;method(ParameterTypes)&gt; and
+ * de.beit.jee.rest:type=ConnectionPool,name=&lt;Interface&gt; and
+ * de.beit.jee.rest:type=Compression,interface=&lt;Interface&gt;.
+ * Registered {@link MetricsExporter}s receive all metrics once a minute.</p>
+ *
+ * @author Markus Pauer
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class MetricsRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+
+    private static final String DOMAIN = "de.beit.jee.rest";
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompressionMetrics> compressions = new ConcurrentHashMap<>();
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    /**
+     * Get the metrics of an endpoint method, they are created on the first call.
+     *
+     * @param type - endpoint interface
+     * @param method - called method
+     * @return metrics of the method
+     */
+    public MethodMetrics getMethodMetrics(Class<?> type, Method method) {
+        String key = type.getName() + '.' + MethodMetrics.signature(method);
+        MethodMetrics metrics = methods.get(key);
+        if (metrics == null) {
+            metrics = new MethodMetrics(type, method);
+            MethodMetrics existing = methods.putIfAbsent(key, metrics);
+            if (existing != null) {
+                return existing;
+            }
+            register(metrics, "type=Endpoint,interface=" + ObjectName.quote(type.getName())
+                    + ",method=" + ObjectName.quote(metrics.getMethodName()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the compression metrics of an endpoint interface, they are created on the first call.
+     *
+     * @param type - endpoint interface
+     * @return compression metrics of the interface
+     */
+    public CompressionMetrics getCompressionMetrics(Class<?> type) {
+        CompressionMetrics metrics = compressions.get(type.getName());
+        if (metrics == null) {
+            metrics = new CompressionMetrics();
+            CompressionMetrics existing = compressions.putIfAbsent(type.getName(), metrics);
+            if (existing != null) {
+                return existing;
+            }
+            register(metrics, compressionName(type.getName()));
+        }
+        return metrics;
+    }
+
+    private static String compressionName(String name) {
+        return "type=Compression,interface=" + ObjectName.quote(name);
+    }
+
+    /**
+     * Publish the utilisation of a connection pool.
+     *
+     * @param name - name of the pool
+     * @param pool - the pool
+     */
+    public void addPool(String name, ConnPoolControl<?> pool) {
+        PoolMetrics metrics = new PoolMetrics(name, pool);
+        PoolMetrics previous = pools.put(name, metrics);
+        if (previous != null) {
+            unregister(poolName(name));
+        }
+        register(metrics, poolName(name));
+    }
+
+    public void removePool(String name) {
+        if (pools.remove(name) != null) {
+            unregister(poolName(name));
+        }
+    }
+
+    private static String poolName(String name) {
+        return "type=ConnectionPool,name=" + ObjectName.quote(name);
+    }
+
+    public Collection<MethodMetrics> getMethodMetrics() {
+        return Collections.unmodifiableCollection(methods.values());
+    }
+
+    public Collection<PoolMetrics> getPoolMetrics() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+
+    public void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void export() {
+        if (exporters.isEmpty()) {
+            return;
+        }
+        Collection<MethodMetrics> methodMetrics = new ArrayList<>(methods.values());
+        Collection<PoolMetrics> poolMetrics = new ArrayList<>(pools.values());
+        for (MetricsExporter exporter : exporters) {
+            try {
+                exporter.export(methodMetrics, poolMetrics);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Metrics not exported by {0}: {1}", new Object[]{exporter, ex.getLocalizedMessage()});
+            }
+        }
+    }
+
+    private static void register(Object mbean, String properties) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(DOMAIN + ':' + properties));
+        } catch (JMException ex) {
+            LOGGER.log(Level.WARNING, "MBean {0} not registered: {1}", new Object[]{properties, ex.getLocalizedMessage()});
+        }
+    }
+
+    private static void unregister(String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ':' + properties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException ex) {
+            LOGGER.log(Level.WARNING, "MBean {0} not unregistered: {1}", new Object[]{properties, ex.getLocalizedMessage()});
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (MethodMetrics metrics : methods.values()) {
+            unregister("type=Endpoint,interface=" + ObjectName.quote(metrics.getInterfaceName())
+                    + ",method=" + ObjectName.quote(metrics.getMethodName()));
+        }
+        for (String name : pools.keySet()) {
+            unregister(poolName(name));
+        }
+        for (String name : compressions.keySet()) {
+            unregister(compressionName(name));
+        }
+        methods.clear();
+        pools.clear();
+        compressions.clear();
+        exporters.clear();
+    }
+
+}
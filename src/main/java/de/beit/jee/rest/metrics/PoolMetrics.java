@@ -0,0 +1,76 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * The utilisation of a connection pool, read from the pool when it is requested.
+ *
+ * @author Markus Pauer
+ */
+public class PoolMetrics implements PoolMetricsMXBean {
+
+    private final String name;
+    private final ConnPoolControl<?> pool;
+
+    PoolMetrics(String name, ConnPoolControl<?> pool) {
+        this.name = name;
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLeased() {
+        return pool.getTotalStats().getLeased();
+    }
+
+    @Override
+    public int getAvailable() {
+        return pool.getTotalStats().getAvailable();
+    }
+
+    @Override
+    public int getPending() {
+        return pool.getTotalStats().getPending();
+    }
+
+    @Override
+    public int getMax() {
+        return pool.getMaxTotal();
+    }
+
+    /**
+     * @return leased connections in relation to the pool size between 0 and 1
+     */
+    @Override
+    public double getUtilisation() {
+        PoolStats stats = pool.getTotalStats();
+        return stats.getMax() == 0 ? 0 : (double) stats.getLeased() / stats.getMax();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This Interceptor limits the number of concurrent calls of an endpoint, so a slow backend
+ * cannot block all container threads.
+ * <p>A call waits at most maxWait milliseconds for a free permit and is rejected with a
+ * {@link CallRejectedException} otherwise.</p>
+ *
+ * @author Markus Pauer
+ */
+public class Bulkhead implements EndpointInterceptor {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWait;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, int maxConcurrent, long maxWait) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        if (!acquire()) {
+            throw new CallRejectedException("Bulkhead of " + name + " is full (" + maxConcurrent + " calls)");
+        }
+        try {
+            return invocation.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        if (maxWait <= 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return number of calls currently running
+     */
+    public int getActiveCalls() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import de.beit.jee.rest.WebApplicationExceptionMapper;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.Response;
+
+/**
+ * This Interceptor stops calling an endpoint that fails too often.
+ * <p>The outcomes of the last windowSize calls are kept in a sliding window. If at least minimumCalls
+ * were recorded and failureRate percent of them failed, the breaker opens and rejects all calls with a
+ * {@link CallRejectedException}. After openDuration milliseconds a single trial call is let through:
+ * its success closes the breaker, its failure opens it again. A trial call that ends without an outcome,
+ * e.g. rejected further down the chain or aborted, lets the next call be the trial.</p>
+ * <p>Which outcomes are failures is decided by {@link WebApplicationExceptionMapper#isFailure(Throwable)}.
+ * The breaker does not use locks, concurrent calls only update atomic counters.</p>
+ *
+ * @author Markus Pauer
+ */
+public class CircuitBreaker implements EndpointInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRate;
+    private final long openDuration;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicBoolean trial = new AtomicBoolean();
+    private volatile Window window;
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRate, long openDuration) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRate = failureRate;
+        this.openDuration = openDuration;
+        this.window = new Window(windowSize);
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        State current = state.get();
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt >= openDuration
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            LOGGER.log(Level.INFO, "Circuit breaker of {0} is half open", name);
+        }
+        current = state.get();
+        boolean trialCall = current == State.HALF_OPEN && trial.compareAndSet(false, true);
+        if (current != State.CLOSED && !trialCall) {
+            throw new CallRejectedException("Circuit breaker of " + name + " is open");
+        }
+        try {
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (CallRejectedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                if (!HedgingInterceptor.isCancelled()) {
+                    record(WebApplicationExceptionMapper.isFailure(ex), trialCall);
+                }
+                throw ex;
+            }
+            record(result instanceof Response && WebApplicationExceptionMapper.isFailure(((Response) result).getStatus()), trialCall);
+            return result;
+        } finally {
+            if (trialCall) {
+                trial.set(false);
+            }
+        }
+    }
+
+    /**
+     * Record the outcome of a call. While the breaker is half open, only the outcome of the trial call counts.
+     */
+    private void record(boolean failure, boolean trialCall) {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (!trialCall) {
+                return;
+            }
+            if (failure) {
+                open(State.HALF_OPEN);
+            } else if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                window = new Window(windowSize);
+                LOGGER.log(Level.INFO, "Circuit breaker of {0} is closed", name);
+            }
+        } else if (current == State.CLOSED) {
+            Window w = window;
+            w.record(failure);
+            if (failure && w.isTripped(minimumCalls, failureRate)) {
+                open(State.CLOSED);
+            }
+        }
+    }
+
+    private void open(State expected) {
+        openedAt = System.currentTimeMillis();
+        if (state.compareAndSet(expected, State.OPEN)) {
+            LOGGER.log(Level.WARNING, "Circuit breaker of {0} is open for {1} ms", new Object[]{name, openDuration});
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Ring buffer of the last call outcomes: 0 success, 1 failure, -1 not yet recorded.
+     */
+    private static final class Window {
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong position = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Window(int size) {
+            outcomes = new AtomicIntegerArray(size);
+            for (int i = 0; i < size; i++) {
+                outcomes.set(i, -1);
+            }
+        }
+
+        void record(boolean failure) {
+            int outcome = failure ? 1 : 0;
+            int index = (int) (position.getAndIncrement() % outcomes.length());
+            int previous = outcomes.getAndSet(index, outcome);
+            if (previous == -1) {
+                calls.incrementAndGet();
+            }
+            int delta = outcome - Math.max(previous, 0);
+            if (delta != 0) {
+                failures.addAndGet(delta);
+            }
+        }
+
+        boolean isTripped(int minimumCalls, int failureRate) {
+            int recorded = calls.get();
+            return recorded >= minimumCalls && failures.get() * 100L >= (long) failureRate * recorded;
+        }
+
+    }
+
+}
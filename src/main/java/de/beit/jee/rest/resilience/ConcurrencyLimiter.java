@@ -0,0 +1,279 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import de.beit.jee.rest.WebApplicationExceptionMapper;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * This Interceptor limits the concurrent calls of an endpoint to a limit that adapts to the round-trip time.
+ * <p>Algorithms:</p>
+ * <ul>
+ * <li>AIMD - grows by one while the limit is used and shrinks by a tenth when the backend is overloaded</li>
+ * <li>VEGAS - estimates the queue at the backend from the shortest and the current round-trip time and keeps it
+ * between 3 and 6 times log10(limit)</li>
+ * <li>GRADIENT - scales the limit by the ratio of the long-term average to the current round-trip time and adds
+ * sqrt(limit) as headroom</li>
+ * </ul>
+ * <p>Status 429, 502, 503, 504, I/O errors and timeouts count as overload. The limit only grows while at least
+ * half of it is used. Calls above the limit wait at most maxWait milliseconds for a running call to finish and
+ * are rejected with a {@link CallRejectedException} otherwise. Acquiring a permit and updating the limit use
+ * compare-and-set, no locks.</p>
+ *
+ * @author Markus Pauer
+ */
+public class ConcurrencyLimiter implements EndpointInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(ConcurrencyLimiter.class.getName());
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double GRADIENT_SMOOTHING = 0.2;
+    private static final double LONG_RTT_DECAY = 2.0 / (600 + 1);
+    private static final int MIN_RTT_WINDOW = 1000;
+
+    public enum Algorithm {
+        AIMD, VEGAS, GRADIENT
+    }
+
+    private final String name;
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWait;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limit;
+    private final AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong longRtt = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a Limiter.
+     *
+     * @param name - name of the endpoint
+     * @param algorithm - algorithm that adapts the limit
+     * @param initialLimit - limit before the first call
+     * @param minLimit - smallest limit
+     * @param maxLimit - largest limit
+     * @param maxWait - milliseconds a call waits above the limit, 0 to reject it at once
+     */
+    public ConcurrencyLimiter(String name, Algorithm algorithm, int initialLimit, int minLimit, int maxLimit, long maxWait) {
+        this.name = name;
+        this.algorithm = algorithm;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxWait = maxWait;
+        this.limit = new AtomicLong(Double.doubleToLongBits(clamp(initialLimit)));
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        if (!acquire()) {
+            rejected.incrementAndGet();
+            throw new CallRejectedException("Concurrency limit of " + name + " reached (" + getLimit() + " calls)");
+        }
+        long start = System.nanoTime();
+        int running = inFlight.get();
+        boolean overload = false;
+        try {
+            Object result = invocation.proceed();
+            overload = result instanceof Response && isOverload(((Response) result).getStatus());
+            return result;
+        } catch (Exception ex) {
+            overload = WebApplicationExceptionMapper.isRetriable(ex)
+                    || ex instanceof WebApplicationException && isOverload(((WebApplicationException) ex).getResponse().getStatus());
+            throw ex;
+        } finally {
+            release();
+            if (!HedgingInterceptor.isCancelled()) {
+                update(System.nanoTime() - start, running, overload);
+            }
+        }
+    }
+
+    private static boolean isOverload(int status) {
+        return status == 429 || WebApplicationExceptionMapper.isRetriable(status);
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Wait for a permit until the deadline. Waiting threads are woken by {@link #release()}.
+     */
+    private boolean acquire() {
+        if (tryAcquire()) {
+            return true;
+        }
+        if (maxWait <= 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWait);
+        Thread thread = Thread.currentThread();
+        waiters.add(thread);
+        try {
+            while (!tryAcquire()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || thread.isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            waiters.remove(thread);
+            wakeUp();
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Record the round-trip time of a call and adapt the limit.
+     *
+     * @param rtt - round-trip time in nanoseconds
+     * @param running - calls running when the call started, including itself
+     * @param overload - the backend was overloaded
+     */
+    void update(long rtt, int running, boolean overload) {
+        long shortest = updateMinRtt(rtt);
+        double average = updateLongRtt(rtt);
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            double updated = clamp(next(current, rtt, shortest, average, running, overload));
+            if (updated == current || limit.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                if ((int) updated != (int) current && LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Concurrency limit of {0} is {1}", new Object[]{name, (int) updated});
+                }
+                return;
+            }
+        }
+    }
+
+    private double next(double current, long rtt, long shortest, double average, int running, boolean overload) {
+        boolean used = running * 2 >= current;
+        switch (algorithm) {
+            case AIMD:
+                if (overload) {
+                    return current * BACKOFF_RATIO;
+                }
+                return used ? current + 1 : current;
+            case VEGAS:
+                double log = Math.max(1, Math.log10(current));
+                if (overload) {
+                    return current - log;
+                }
+                double queue = current * (1 - (double) shortest / Math.max(1, rtt));
+                if (queue > 6 * log) {
+                    return current - log;
+                }
+                return used && queue < 3 * log ? current + log : current;
+            default:
+                double gradient = overload ? 0.5 : Math.max(0.5, Math.min(1, average / Math.max(1, rtt)));
+                if (!used && gradient == 1) {
+                    return current;
+                }
+                double target = current * gradient + Math.sqrt(current);
+                return current * (1 - GRADIENT_SMOOTHING) + target * GRADIENT_SMOOTHING;
+        }
+    }
+
+    /**
+     * The shortest round-trip time is reset after a window of calls, so it follows a backend that became slower.
+     */
+    private long updateMinRtt(long rtt) {
+        if (samples.incrementAndGet() % MIN_RTT_WINDOW == 0) {
+            minRtt.set(rtt);
+            return rtt;
+        }
+        while (true) {
+            long current = minRtt.get();
+            if (rtt >= current || minRtt.compareAndSet(current, rtt)) {
+                return Math.min(rtt, current);
+            }
+        }
+    }
+
+    private double updateLongRtt(long rtt) {
+        while (true) {
+            long bits = longRtt.get();
+            double current = Double.longBitsToDouble(bits);
+            double updated = current == 0 ? rtt : current + (rtt - current) * LONG_RTT_DECAY;
+            if (longRtt.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return updated;
+            }
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    /**
+     * @return current limit of concurrent calls
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * @return number of calls currently running
+     */
+    public int getActiveCalls() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of calls rejected since the Limiter was created
+     */
+    public long getRejectedCalls() {
+        return rejected.get();
+    }
+
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.model.User;
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import de.beit.jee.rest.UserContext;
+import de.beit.jee.rest.balance.LoadBalancer;
+import de.beit.jee.rest.metrics.LatencyHistogram;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.core.Response;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * This Interceptor sends a second attempt of a GET, HEAD or OPTIONS call if the first has not answered within
+ * a delay, and returns the result that comes first.
+ * <p>The first attempt runs in the calling thread. The second is started by the timer after the delay and runs
+ * on a small executor of its own; if that is saturated, the call is not hedged. The delay is fixed or the given
+ * percentile of the recent call latencies. The second attempt avoids the URL of the first if the endpoint has
+ * several.</p>
+ * <p>The first successful attempt wins, the HTTP request of the other is aborted and a result that arrives
+ * anyway is closed. Interceptors below this one check {@link #isCancelled()} so an aborted attempt is not
+ * counted as failure. If the first attempt fails, the second is awaited up to the timeout.</p>
+ * <p>A budget caps the extra load: every call earns budgetPercent hundredths of a hedge, at most
+ * {@link #MAX_BUDGET} hedges are saved up.</p>
+ *
+ * @author Markus Pauer
+ */
+public class HedgingInterceptor implements EndpointInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(HedgingInterceptor.class.getName());
+
+    static final int MAX_BUDGET = 10;
+    private static final int HEDGE_COST = 100;
+    private static final int MIN_SAMPLES = 100;
+    private static final int WINDOW = 1000;
+
+    private static final ThreadLocal<Attempt> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final long delay;
+    private final double percentile;
+    private final int budgetPercent;
+    private final long timeout;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor;
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicReference<LatencyHistogram> latencies = new AtomicReference<>(new LatencyHistogram());
+    private volatile long percentileDelay = -1;
+
+    /**
+     * Creates an Interceptor.
+     *
+     * @param name - name of the endpoint
+     * @param delay - milliseconds before the second attempt, used until enough latencies are known for the percentile
+     * @param percentile - percentile of the latencies used as delay, 0 for the fixed delay
+     * @param budgetPercent - second attempts in percent of the calls
+     * @param timeout - milliseconds to wait for the second attempt after the first failed
+     * @param timer - timer that starts the second attempts, its tasks do not block
+     * @param executor - executor of the second attempts, it should reject tasks instead of queueing them
+     */
+    public HedgingInterceptor(String name, long delay, double percentile, int budgetPercent, long timeout,
+            ScheduledExecutorService timer, ExecutorService executor) {
+        this.name = name;
+        this.delay = delay;
+        this.percentile = percentile;
+        this.budgetPercent = budgetPercent;
+        this.timeout = timeout;
+        this.timer = timer;
+        this.executor = executor;
+    }
+
+    /**
+     * Register the HTTP request of the current attempt, so it can be aborted when the other attempt wins.
+     * Called by the HTTP engine before the request is sent.
+     *
+     * @param request - HTTP request
+     */
+    public static void requestStarted(HttpUriRequest request) {
+        Attempt attempt = CURRENT.get();
+        if (attempt != null) {
+            attempt.setRequest(request);
+        }
+    }
+
+    /**
+     * Tell if the attempt running in the current thread has been cancelled because the other attempt won.
+     * Its failure is caused by the abort and must not be recorded as failure of the endpoint.
+     *
+     * @return true if the current attempt was cancelled
+     */
+    public static boolean isCancelled() {
+        Attempt attempt = CURRENT.get();
+        return attempt != null && attempt.cancelled;
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        if (!isHedgeable(invocation.getMethod())) {
+            return invocation.proceed();
+        }
+        earnBudget();
+        Hedge hedge = new Hedge(invocation);
+        ScheduledFuture<?> scheduled = null;
+        if (budget.get() >= HEDGE_COST) {
+            try {
+                scheduled = timer.schedule(hedge, getDelay(), TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException ex) {
+                LOGGER.log(Level.FINE, "Hedge of {0} not scheduled: {1}", new Object[]{invocation, ex.getLocalizedMessage()});
+            }
+        }
+        Attempt first = hedge.first;
+        Attempt second;
+        try {
+            first.run();
+        } finally {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            second = hedge.finish();
+        }
+        if (first.failure != null && second != null) {
+            // the other attempt may still succeed
+            second.await(timeout);
+        }
+        // a failed first attempt wins if the second has not succeeded by now
+        hedge.winner.compareAndSet(null, first);
+        Attempt winner = hedge.winner.get();
+        if (second != null && second != winner) {
+            second.cancel();
+        }
+        if (winner.failure != null) {
+            throw winner.failure;
+        }
+        record(winner.nanos);
+        return winner.result;
+    }
+
+    private static boolean isHedgeable(Method method) {
+        return (method.isAnnotationPresent(GET.class) || method.isAnnotationPresent(HEAD.class)
+                || method.isAnnotationPresent(OPTIONS.class)) && !Iterator.class.equals(method.getReturnType());
+    }
+
+    /**
+     * @return delay in microseconds
+     */
+    long getDelay() {
+        long recent = percentileDelay;
+        return recent >= 0 ? recent : TimeUnit.MILLISECONDS.toMicros(delay);
+    }
+
+    /**
+     * The percentile of the last full window of calls is used, so the delay follows the backend. It is
+     * computed once per window; the first window ends after {@link #MIN_SAMPLES} calls.
+     */
+    private void record(long nanos) {
+        if (percentile <= 0) {
+            return;
+        }
+        LatencyHistogram current = latencies.get();
+        current.record(nanos, TimeUnit.NANOSECONDS);
+        long window = percentileDelay < 0 ? MIN_SAMPLES : WINDOW;
+        if (current.getCount() >= window && latencies.compareAndSet(current, new LatencyHistogram())) {
+            percentileDelay = current.getPercentile(percentile);
+        }
+    }
+
+    private void earnBudget() {
+        addBudget(budgetPercent);
+    }
+
+    private void addBudget(long amount) {
+        while (true) {
+            long current = budget.get();
+            long updated = Math.min(current + amount, (long) MAX_BUDGET * HEDGE_COST);
+            if (updated == current || budget.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private boolean spendBudget() {
+        while (true) {
+            long current = budget.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+            if (budget.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return number of second attempts sent since the Interceptor was created
+     */
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingInterceptor{" + name + '}';
+    }
+
+    /**
+     * The attempts of one call. Run by the timer, it starts the second attempt unless the call is over.
+     */
+    private final class Hedge implements Runnable {
+
+        private final EndpointInvocation invocation;
+        private final Set<String> urls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+        private final Attempt first;
+        private Attempt second;
+        private boolean finished;
+
+        Hedge(EndpointInvocation invocation) {
+            this.invocation = invocation;
+            this.first = new Attempt(this);
+        }
+
+        @Override
+        public synchronized void run() {
+            if (finished || winner.get() != null || !spendBudget()) {
+                return;
+            }
+            Attempt attempt = new Attempt(this);
+            try {
+                executor.execute(attempt);
+            } catch (RejectedExecutionException ex) {
+                addBudget(HEDGE_COST);
+                LOGGER.log(Level.FINE, "Hedge of {0} rejected", invocation);
+                return;
+            }
+            second = attempt;
+            hedges.incrementAndGet();
+            LOGGER.log(Level.FINE, "Hedged {0}", invocation);
+        }
+
+        /**
+         * Stop starting the second attempt.
+         *
+         * @return second attempt or null if it was not started
+         */
+        synchronized Attempt finish() {
+            finished = true;
+            return second;
+        }
+
+        /**
+         * Cancel the attempt that lost against the winner.
+         */
+        void won(Attempt attempt) {
+            Attempt other;
+            synchronized (this) {
+                other = attempt == first ? second : first;
+            }
+            if (other != null) {
+                other.cancel();
+            }
+        }
+
+    }
+
+    /**
+     * One attempt of a call, executed with the User of the call and the URLs tried by the other attempt.
+     */
+    private static final class Attempt implements Runnable {
+
+        private final Hedge hedge;
+        private final User user;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile HttpUriRequest request;
+        private volatile boolean cancelled;
+        private Object result;
+        private Exception failure;
+        private long nanos;
+
+        Attempt(Hedge hedge) {
+            this.hedge = hedge;
+            this.user = hedge.invocation.getUser();
+        }
+
+        @Override
+        public void run() {
+            Attempt outer = CURRENT.get();
+            User previous = UserContext.setUser(user);
+            CURRENT.set(this);
+            LoadBalancer.setTriedUrls(hedge.urls);
+            long start = System.nanoTime();
+            try {
+                result = hedge.invocation.proceed();
+            } catch (Exception ex) {
+                failure = ex;
+            } finally {
+                nanos = System.nanoTime() - start;
+                LoadBalancer.setTriedUrls(null);
+                if (outer != null) {
+                    CURRENT.set(outer);
+                } else {
+                    CURRENT.remove();
+                }
+                UserContext.setUser(previous);
+            }
+            if (failure == null) {
+                if (hedge.winner.compareAndSet(null, this)) {
+                    hedge.won(this);
+                } else {
+                    close(result);
+                }
+            }
+            done.countDown();
+        }
+
+        void await(long timeout) {
+            try {
+                done.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void setRequest(HttpUriRequest request) {
+            this.request = request;
+            if (cancelled) {
+                request.abort();
+            }
+        }
+
+        /**
+         * Abort the HTTP request of the attempt. The attempt closes its result itself if it arrives anyway.
+         */
+        void cancel() {
+            cancelled = true;
+            HttpUriRequest current = request;
+            if (current != null && !current.isAborted()) {
+                current.abort();
+            }
+        }
+
+        private static void close(Object result) {
+            if (result instanceof Response) {
+                ((Response) result).close();
+            } else if (result instanceof Closeable) {
+                try {
+                    ((Closeable) result).close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, "Result of a cancelled attempt not closed: {0}", ex.getLocalizedMessage());
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This Interceptor limits the calls of an endpoint to a rate, so traffic spikes do not reach the backend.
+ * <p>It is a token bucket that holds up to burst tokens and is refilled with permitsPerSecond tokens per second.
+ * The bucket is kept as the time at which it is full again (generic cell rate algorithm), so taking a token is a
+ * single compare-and-set. A call without token waits at most maxWait milliseconds for its token and is rejected
+ * with a {@link CallRejectedException} otherwise.</p>
+ *
+ * @author Markus Pauer
+ */
+public class RateLimiter implements EndpointInterceptor {
+
+    private final String name;
+    private final double permitsPerSecond;
+    private final long interval;
+    private final long tolerance;
+    private final long maxWait;
+    private final AtomicLong full = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a Limiter.
+     *
+     * @param name - name of the endpoint
+     * @param permitsPerSecond - calls per second
+     * @param burst - calls that may be made at once after a pause
+     * @param maxWait - milliseconds a call waits for its token, 0 to reject it at once
+     */
+    public RateLimiter(String name, double permitsPerSecond, int burst, long maxWait) {
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.tolerance = interval * (Math.max(1, burst) - 1);
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(maxWait);
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        long wait = reserve();
+        if (wait < 0) {
+            throw new CallRejectedException("Rate limit of " + name + " reached (" + permitsPerSecond + " calls/s)");
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CallRejectedException("Interrupted while waiting for the rate limit of " + name);
+            }
+        }
+        return invocation.proceed();
+    }
+
+    /**
+     * Take a token.
+     *
+     * @return nanoseconds until the token is available or -1 if the call must be rejected
+     */
+    long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = full.get();
+            long start = Math.max(current, now);
+            long wait = start - tolerance - now;
+            if (wait > maxWait) {
+                return -1;
+            }
+            if (full.compareAndSet(current, start + interval)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+}
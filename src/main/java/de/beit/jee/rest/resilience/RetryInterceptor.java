@@ -0,0 +1,122 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import de.beit.jee.rest.WebApplicationExceptionMapper;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.PUT;
+import javax.ws.rs.core.Response;
+
+/**
+ * This Interceptor repeats failed calls of idempotent methods (GET, HEAD, OPTIONS, PUT and DELETE).
+ * <p>Only failures that {@link WebApplicationExceptionMapper#isRetriable(Throwable)} accepts are repeated.
+ * Before each retry the caller sleeps a random time between zero and initialBackoff * 2^(retry - 1),
+ * limited to maxBackoff, so clients that failed together do not retry together.
+ * Calls with a streamed request body (Iterator) are not repeated.</p>
+ *
+ * @author Markus Pauer
+ */
+public class RetryInterceptor implements EndpointInterceptor {
+
+    private static final Logger LOGGER = Logger.getLogger(RetryInterceptor.class.getName());
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    public RetryInterceptor(int maxAttempts, long initialBackoff, long maxBackoff) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        if (!isIdempotent(invocation.getMethod()) || hasStreamedBody(invocation.getArgs())) {
+            return invocation.proceed();
+        }
+        for (int attempt = 1;; attempt++) {
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Exception ex) {
+                if (attempt >= maxAttempts || HedgingInterceptor.isCancelled() || !WebApplicationExceptionMapper.isRetriable(ex)
+                        || !backoff(invocation, attempt)) {
+                    throw ex;
+                }
+                continue;
+            }
+            if (attempt < maxAttempts && result instanceof Response
+                    && WebApplicationExceptionMapper.isRetriable(((Response) result).getStatus())) {
+                if (backoff(invocation, attempt)) {
+                    ((Response) result).close();
+                    continue;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Sleep before the next attempt.
+     *
+     * @return false if the thread was interrupted and the call must not be repeated
+     */
+    private boolean backoff(EndpointInvocation invocation, int attempt) {
+        long cap = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+        long delay = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        LOGGER.log(Level.FINE, "Retry {0} of {1} in {2} ms", new Object[]{attempt, invocation, delay});
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * An Iterator body is consumed by the first attempt and cannot be sent again.
+     */
+    private static boolean hasStreamedBody(Object[] args) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof Iterator) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIdempotent(Method method) {
+        return method.isAnnotationPresent(GET.class) || method.isAnnotationPresent(HEAD.class)
+                || method.isAnnotationPresent(OPTIONS.class) || method.isAnnotationPresent(PUT.class)
+                || method.isAnnotationPresent(DELETE.class);
+    }
+
+}
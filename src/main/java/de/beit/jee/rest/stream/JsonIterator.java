@@ -0,0 +1,96 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.stream;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+
+/**
+ * An Iterator over the elements of a JSON array that are read from the response one at a time.
+ * <p>Only the current element is held in memory. The response is closed when the last element has been read,
+ * callers that stop earlier must call {@link #close()} to release the connection.</p>
+ *
+ * @author Markus Pauer
+ * @param <T> type of the elements
+ */
+public class JsonIterator<T> implements Iterator<T>, Closeable {
+
+    private final MappingIterator<T> elements;
+    private final Response response;
+    private boolean closed;
+
+    JsonIterator(MappingIterator<T> elements, Response response) {
+        this.elements = elements;
+        this.response = response;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (elements.hasNextValue()) {
+                return true;
+            }
+        } catch (IOException ex) {
+            close();
+            throw new ProcessingException(ex);
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return elements.nextValue();
+        } catch (IOException ex) {
+            close();
+            throw new ProcessingException(ex);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            elements.close();
+        } catch (IOException ex) {
+            // the response is closed anyway
+        } finally {
+            response.close();
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.stream;
+
+import org.jboss.resteasy.client.jaxrs.ClientHttpEngine;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+
+/**
+ * This Builder creates clients with a {@link StreamingHttpEngine} and registers the
+ * {@link IteratorMessageBodyWriter}. All other settings are applied as by the {@link ResteasyClientBuilder}.
+ *
+ * @author Markus Pauer
+ */
+public class StreamingClientBuilder extends ResteasyClientBuilder {
+
+    public StreamingClientBuilder() {
+        register(IteratorMessageBodyWriter.class);
+    }
+
+    @Override
+    protected ClientHttpEngine initDefaultEngine() {
+        return new StreamingHttpEngine((ApacheHttpClient4Engine) super.initDefaultEngine());
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.stream;
+
+import de.beit.jee.rest.resilience.HedgingInterceptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import javax.ws.rs.core.MediaType;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+
+/**
+ * This Engine sends request bodies given as {@link Iterator} with chunked transfer encoding
+ * while they are serialized. Other bodies are buffered as usual.
+ * <p>A streamed body can be sent only once, so the HTTP client cannot repeat such a request.</p>
+ * <p>Requests are registered with the {@link HedgingInterceptor}, so the losing attempt of a hedged call
+ * can be aborted.</p>
+ *
+ * @author Markus Pauer
+ */
+public class StreamingHttpEngine extends ApacheHttpClient4Engine {
+
+    /**
+     * The engine whose HttpClient is used. It is kept reachable, because its finalizer
+     * would shut down the shared connection pool.
+     */
+    private final ApacheHttpClient4Engine defaultEngine;
+
+    public StreamingHttpEngine(HttpClient httpClient, boolean closeHttpClient) {
+        super(httpClient, closeHttpClient);
+        this.defaultEngine = null;
+    }
+
+    /**
+     * Creates an Engine with the HttpClient and the settings of the given Engine.
+     *
+     * @param defaultEngine - engine created by the {@link org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder}
+     */
+    public StreamingHttpEngine(ApacheHttpClient4Engine defaultEngine) {
+        super(defaultEngine.getHttpClient(), true);
+        this.defaultEngine = defaultEngine;
+        setResponseBufferSize(defaultEngine.getResponseBufferSize());
+        setHostnameVerifier(defaultEngine.getHostnameVerifier());
+        setSslContext(defaultEngine.getSslContext());
+        setDefaultProxy(defaultEngine.getDefaultProxy());
+    }
+
+    /**
+     * Registers the request with the {@link HedgingInterceptor}, so a losing attempt can be aborted.
+     */
+    @Override
+    protected void loadHttpMethod(ClientInvocation request, HttpRequestBase httpMethod) throws Exception {
+        super.loadHttpMethod(request, httpMethod);
+        HedgingInterceptor.requestStarted(httpMethod);
+    }
+
+    @Override
+    protected HttpEntity buildEntity(final ClientInvocation request) throws IOException {
+        if (!(request.getEntity() instanceof Iterator)) {
+            return super.buildEntity(request);
+        }
+        AbstractHttpEntity entity = new AbstractHttpEntity() {
+            private boolean written;
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            public long getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public InputStream getContent() {
+                throw new UnsupportedOperationException("Streamed request body");
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                written = true;
+                request.writeRequestBody(out);
+                out.flush();
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return !written;
+            }
+        };
+        entity.setChunked(true);
+        MediaType mediaType = request.getHeaders().getMediaType();
+        if (mediaType != null) {
+            entity.setContentType(mediaType.toString());
+        }
+        return entity;
+    }
+
+}
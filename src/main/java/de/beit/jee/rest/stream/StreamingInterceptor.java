@@ -0,0 +1,123 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.beit.jee.rest.EndpointInterceptor;
+import de.beit.jee.rest.EndpointInvocation;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.Response;
+import org.jboss.resteasy.client.jaxrs.ProxyConfig;
+import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+import org.jboss.resteasy.client.jaxrs.internal.proxy.ClientInvoker;
+
+/**
+ * This Interceptor executes the endpoint methods that return an {@link Iterator}.
+ * <p>The response body must be a JSON array. Instead of reading the whole array, the Interceptor returns a
+ * {@link JsonIterator} that reads one element after the other from the open response.
+ * It must be the last Interceptor, the Resteasy proxy is not called for these methods.</p>
+ *
+ * @author Markus Pauer
+ */
+public class StreamingInterceptor implements EndpointInterceptor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<Method, Invoker> invokers;
+
+    private StreamingInterceptor(Map<Method, Invoker> invokers) {
+        this.invokers = invokers;
+    }
+
+    /**
+     * Create the Interceptor for the streaming methods of an endpoint interface.
+     *
+     * @param type - endpoint interface
+     * @param target - target with the URL and the filters of the endpoint
+     * @return Interceptor or null if the interface has no method returning an Iterator
+     */
+    public static StreamingInterceptor create(Class<?> type, ResteasyWebTarget target) {
+        Map<Method, Invoker> invokers = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Iterator.class.equals(method.getReturnType())) {
+                invokers.put(method, new Invoker(target, type, method));
+            }
+        }
+        return invokers.isEmpty() ? null : new StreamingInterceptor(invokers);
+    }
+
+    @Override
+    public Object invoke(EndpointInvocation invocation) throws Exception {
+        Invoker invoker = invokers.get(invocation.getMethod());
+        if (invoker == null) {
+            return invocation.proceed();
+        }
+        Response response = invoker.request(invocation.getArgs()).invoke();
+        if (response.getStatus() >= 400) {
+            return ClientInvocation.handleErrorStatus(response);
+        }
+        if (!response.hasEntity()) {
+            response.close();
+            return Collections.emptyIterator();
+        }
+        try {
+            return new JsonIterator<>(invoker.reader.<Object>readValues(response.readEntity(InputStream.class)), response);
+        } catch (Exception ex) {
+            response.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Builds the request like the Resteasy proxy, but does not read the response.
+     */
+    private static final class Invoker extends ClientInvoker {
+
+        private final ObjectReader reader;
+
+        Invoker(ResteasyWebTarget target, Class<?> type, Method method) {
+            super(target, type, method, new ProxyConfig(type.getClassLoader(), null, null));
+            Type returnType = method.getGenericReturnType();
+            Type elementType = returnType instanceof ParameterizedType
+                    ? ((ParameterizedType) returnType).getActualTypeArguments()[0] : Object.class;
+            this.reader = MAPPER.readerFor(MAPPER.getTypeFactory().constructType(elementType));
+            for (Annotation annotation : method.getAnnotations()) {
+                HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+                if (httpMethod != null) {
+                    setHttpMethod(httpMethod.value());
+                }
+            }
+        }
+
+        ClientInvocation request(Object[] args) {
+            return createRequest(args);
+        }
+
+    }
+
+}
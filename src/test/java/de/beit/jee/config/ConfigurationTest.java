@@ -0,0 +1,146 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link Configuration} snapshots and Listeners.
+ *
+ * @author Markus Pauer
+ */
+public class ConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class RecordingListener implements ConfigurationListener {
+
+        private final List<Set<String>> changes = new ArrayList<>();
+
+        @Override
+        public void configurationChanged(Set<String> keys) {
+            changes.add(keys);
+        }
+
+    }
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    @Test
+    public void typedPropertiesFallBackToTheDefault() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(),
+                "a.count = 3\na.ratio = 0.5\na.flag = true\na.broken = x\n");
+        assertEquals("3", configuration.getProperty("a.count"));
+        assertEquals(3, configuration.getIntProperty("a.count", 1));
+        assertEquals(0.5, configuration.getDoubleProperty("a.ratio", 1), 0);
+        assertTrue(configuration.getBooleanProperty("a.flag", false));
+        assertEquals(7, configuration.getLongProperty("a.broken", 7));
+        assertEquals("none", configuration.getProperty("a.missing", "none"));
+    }
+
+    @Test
+    public void intPropertyOutOfRangeFallsBackToTheDefault() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(),
+                "a.size = 4294967297\na.negative = -2147483649\n");
+        assertEquals(4294967297L, configuration.getLongProperty("a.size", 1));
+        assertEquals(1, configuration.getIntProperty("a.size", 1));
+        assertEquals(1, configuration.getIntProperty("a.negative", 1));
+    }
+
+    @Test(expected = PropertyNotFoundException.class)
+    public void missingPropertyIsReported() throws Exception {
+        TestConfiguration.create(folder.getRoot(), "a.count = 3\n").getProperty("a.missing");
+    }
+
+    @Test
+    public void reloadPublishesTheNewValues() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(), "a.count = 3\n");
+        TestConfiguration.update(configuration, "a.count = 4\n");
+        assertEquals(4, configuration.getIntProperty("a.count", 1));
+    }
+
+    @Test
+    public void listenersGetTheChangedKeysOfTheirPrefix() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(),
+                "a.kept = 1\na.modified = 1\na.removed = 1\nb.other = 1\n");
+        RecordingListener listener = new RecordingListener();
+        configuration.addListener("a.", listener);
+        TestConfiguration.update(configuration, "a.kept = 1\na.modified = 2\na.added = 1\nb.other = 2\n");
+        assertEquals(1, listener.changes.size());
+        assertEquals(keys("a.modified", "a.removed", "a.added"), listener.changes.get(0));
+    }
+
+    @Test
+    public void listenersAreNotifiedWhenAnEmptyConfigurationIsFilled() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(), "");
+        RecordingListener listener = new RecordingListener();
+        configuration.addListener("", listener);
+        TestConfiguration.update(configuration, "a.count = 3\n");
+        assertEquals(1, listener.changes.size());
+        assertEquals(keys("a.count"), listener.changes.get(0));
+    }
+
+    @Test
+    public void listenersAreNotNotifiedWithoutChanges() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(), "a.count = 3\n");
+        RecordingListener listener = new RecordingListener();
+        configuration.addListener("", listener);
+        TestConfiguration.update(configuration, "a.count = 3\n");
+        assertTrue(listener.changes.isEmpty());
+    }
+
+    @Test
+    public void removedListenersAreNotNotified() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(), "a.count = 3\n");
+        RecordingListener listener = new RecordingListener();
+        configuration.addListener("a.", listener);
+        configuration.addListener("", listener);
+        configuration.removeListener(listener);
+        TestConfiguration.update(configuration, "a.count = 4\n");
+        assertTrue(listener.changes.isEmpty());
+    }
+
+    @Test
+    public void failingListenerDoesNotStopTheOthers() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(), "a.count = 3\n");
+        configuration.addListener("", new ConfigurationListener() {
+            @Override
+            public void configurationChanged(Set<String> keys) {
+                throw new IllegalStateException("failed");
+            }
+        });
+        RecordingListener listener = new RecordingListener();
+        configuration.addListener("", listener);
+        TestConfiguration.update(configuration, "a.count = 4\n");
+        assertFalse(listener.changes.isEmpty());
+        assertEquals(4, configuration.getIntProperty("a.count", 1));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.config;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the {@link ConfigurationWatcher}.
+ *
+ * @author Markus Pauer
+ */
+public class ConfigurationWatcherTest {
+
+    private static final long TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration configuration;
+    private ConfigurationWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = TestConfiguration.create(folder.getRoot(), "a.count = 3\n");
+        watcher = new ConfigurationWatcher(configuration,
+                Collections.singleton(folder.getRoot().toPath()), 20);
+        watcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+    }
+
+    private int awaitCount(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        int count = configuration.getIntProperty("a.count", 0);
+        while (count != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            count = configuration.getIntProperty("a.count", 0);
+        }
+        return count;
+    }
+
+    @Test
+    public void modifiedFileIsReloaded() throws Exception {
+        TestConfiguration.write(new File(folder.getRoot(), "configuration.properties"), "a.count = 42\n");
+        assertEquals(42, awaitCount(42));
+    }
+
+    @Test
+    public void replacedFileIsReloaded() throws Exception {
+        File replacement = new File(folder.getRoot(), "configuration.properties.new");
+        TestConfiguration.write(replacement, "a.count = 42\n");
+        Files.move(replacement.toPath(), new File(folder.getRoot(), "configuration.properties").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        assertEquals(42, awaitCount(42));
+    }
+
+}
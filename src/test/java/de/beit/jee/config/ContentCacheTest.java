@@ -0,0 +1,92 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.config;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the {@link ContentCache} and the JSON access of the {@link Configuration}.
+ *
+ * @author Markus Pauer
+ */
+public class ContentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void contentIsReadAsIs() throws Exception {
+        File file = folder.newFile("a.json");
+        TestConfiguration.write(file, "{\n  \"a\": 1\n}\n");
+        assertEquals("{\n  \"a\": 1\n}\n", new ContentCache().get(file).getText());
+    }
+
+    @Test
+    public void contentIsCachedUntilTheFileIsModified() throws Exception {
+        File file = folder.newFile("a.json");
+        TestConfiguration.write(file, "{\"a\": 1}");
+        ContentCache cache = new ContentCache();
+        ContentCache.Content content = cache.get(file);
+        assertSame(content, cache.get(file));
+        assertSame(content.getJson(), cache.get(file).getJson());
+
+        TestConfiguration.write(file, "{\"a\": 22}");
+        ContentCache.Content modified = cache.get(file);
+        assertNotSame(content, modified);
+        assertEquals(22, ((JsonObject) modified.getJson()).getInt("a"));
+    }
+
+    @Test
+    public void largeFilesAreRead() throws Exception {
+        char[] padding = new char[2 * 1024 * 1024];
+        Arrays.fill(padding, ' ');
+        File file = folder.newFile("large.json");
+        TestConfiguration.write(file, "[1," + new String(padding) + "2]");
+        JsonArray array = (JsonArray) new ContentCache().get(file).getJson();
+        assertEquals(2, array.getInt(1));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFileIsReported() throws Exception {
+        new ContentCache().get(new File(folder.getRoot(), "missing.json"));
+    }
+
+    @Test
+    public void configurationReadsJsonFilesBesideTheConfiguration() throws Exception {
+        Configuration configuration = TestConfiguration.create(folder.getRoot(), "");
+        TestConfiguration.write(new File(folder.getRoot(), "routes.json"), "{\"a\": 1}");
+        assertEquals("{\"a\": 1}", configuration.getContent("routes"));
+        assertEquals(1, ((JsonObject) configuration.getJson("routes")).getInt("a"));
+        assertSame(configuration.getJson("routes"), configuration.getJson("routes"));
+    }
+
+    @Test(expected = PropertyNotFoundException.class)
+    public void missingJsonFileIsReported() throws Exception {
+        TestConfiguration.create(folder.getRoot(), "").getJson("missing");
+    }
+
+}
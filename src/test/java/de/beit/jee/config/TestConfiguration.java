@@ -0,0 +1,118 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Creates a {@link Configuration} that reads Property-Files in a test directory, as the container would.
+ *
+ * @author Markus Pauer
+ */
+public final class TestConfiguration {
+
+    private TestConfiguration() {
+    }
+
+    /**
+     * Create a loaded Configuration without watcher.
+     *
+     * @param directory - directory of the Property-Files
+     * @param properties - content of the configuration file
+     * @return loaded Configuration
+     * @throws IOException if a file could not be written
+     */
+    public static Configuration create(File directory, String properties) throws IOException {
+        File configurationFile = new File(directory, "configuration.properties");
+        File passwordFile = new File(directory, "password.properties");
+        write(configurationFile, properties);
+        write(passwordFile, "");
+        Configuration configuration = new Configuration();
+        set(configuration, "configurationFilename", configurationFile.getPath());
+        set(configuration, "passwordFilename", passwordFile.getPath());
+        configuration.reload();
+        return configuration;
+    }
+
+    /**
+     * Replace the configuration file and reload it.
+     *
+     * @param configuration - Configuration created by {@link #create(File, String)}
+     * @param properties - new content of the configuration file
+     * @throws IOException if the file could not be written
+     */
+    public static void update(Configuration configuration, String properties) throws IOException {
+        File configurationFile = new File((String) get(configuration, "configurationFilename"));
+        long lastModified = configurationFile.lastModified();
+        write(configurationFile, properties);
+        // the file system may not notice a change within the same second
+        configurationFile.setLastModified(lastModified + 1000);
+        configuration.reload();
+    }
+
+    /**
+     * Write a file in ISO-8859-1 like the Property-Files are read.
+     *
+     * @param file - file to write
+     * @param content - content of the file
+     * @throws IOException if the file could not be written
+     */
+    public static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Set a field of a bean like the container injects it.
+     *
+     * @param bean - bean
+     * @param name - name of the field
+     * @param value - value to inject
+     */
+    public static void set(Object bean, String name, Object value) {
+        try {
+            field(bean, name).set(bean, value);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Object get(Object bean, String name) {
+        try {
+            return field(bean, name).get(bean);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Field field(Object bean, String name) {
+        for (Class<?> type = bean.getClass(); type != Object.class; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException ex) {
+                // look in the superclass
+            }
+        }
+        throw new IllegalStateException("No field " + name + " in " + bean.getClass().getName());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.model;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the cached encoding of the {@link User}.
+ *
+ * @author Markus Pauer
+ */
+public class UserTest {
+
+    private static User createUser() {
+        User user = new User();
+        user.setUserId(1L);
+        user.setName("alice");
+        user.addRole("customer-read");
+        user.addCustomer("4711");
+        return user;
+    }
+
+    @Test
+    public void encodingIsCached() {
+        User user = createUser();
+        assertSame(user.encodeUser(), user.encodeUser());
+    }
+
+    @Test
+    public void modificationInvalidatesTheEncoding() {
+        User user = createUser();
+        String encoded = user.encodeUser();
+        user.setName("bob");
+        String renamed = user.encodeUser();
+        assertNotEquals(encoded, renamed);
+        user.getRoles().add("order-write");
+        String withRole = user.encodeUser();
+        assertNotEquals(renamed, withRole);
+        assertTrue(User.decodeUser(withRole).hasRole("order-write"));
+    }
+
+    @Test
+    public void decodingRestoresTheUser() {
+        User user = createUser();
+        User decoded = User.decodeUser(user.encodeUser());
+        assertEquals(Long.valueOf(1), decoded.getUserId());
+        assertEquals("alice", decoded.getName());
+        assertTrue(decoded.hasRole("customer-read"));
+        assertTrue(decoded.hasCustomer("4711"));
+        assertEquals(user.encodeUser(), decoded.encodeUser());
+    }
+
+    @Test
+    public void decodedUsersAreIndependentCopies() {
+        String encoded = createUser().encodeUser();
+        User first = User.decodeUser(encoded);
+        first.addRole("admin");
+        User second = User.decodeUser(encoded);
+        assertNotSame(first, second);
+        assertFalse(second.hasRole("admin"));
+        assertEquals(encoded, second.encodeUser());
+    }
+
+}
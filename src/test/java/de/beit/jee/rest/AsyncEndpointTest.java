@@ -0,0 +1,113 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.TestConfiguration;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link AsyncEndpoint} and the {@link AsyncExecutor}.
+ *
+ * @author Markus Pauer
+ */
+public class AsyncEndpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AsyncExecutor executor;
+
+    public interface Echo {
+
+        String echo(String text);
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        executor = TestBeans.asyncExecutor(TestConfiguration.create(folder.getRoot(),
+                "restclient.async.threads = 1\nrestclient.async.queueSize = 1\n"));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void callRunsOnTheExecutor() throws Exception {
+        AsyncEndpoint<Echo> endpoint = new AsyncEndpoint<Echo>(new Echo() {
+            @Override
+            public String echo(String text) {
+                return text + " from " + Thread.currentThread().getName();
+            }
+        }, executor);
+        Future<String> result = endpoint.submit(new Call<Echo, String>() {
+            @Override
+            public String call(Echo endpoint) {
+                return endpoint.echo("hello");
+            }
+        });
+        assertTrue(result.get(5, TimeUnit.SECONDS).startsWith("hello from rest-client-async-"));
+    }
+
+    @Test
+    public void saturatedExecutorRejectsCalls() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        AsyncEndpoint<Echo> endpoint = new AsyncEndpoint<Echo>(new Echo() {
+            @Override
+            public String echo(String text) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return text;
+            }
+        }, executor);
+        Call<Echo, String> call = new Call<Echo, String>() {
+            @Override
+            public String call(Echo endpoint) {
+                return endpoint.echo("blocked");
+            }
+        };
+        Future<String> running = endpoint.submit(call);
+        Future<String> queued = endpoint.submit(call);
+        try {
+            endpoint.submit(call);
+            fail("third call must be rejected");
+        } catch (RejectedExecutionException ex) {
+            // pool and queue are full
+        }
+        release.countDown();
+        assertEquals("blocked", running.get(5, TimeUnit.SECONDS));
+        assertEquals("blocked", queued.get(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link AsyncLogWriter}.
+ *
+ * @author Markus Pauer
+ */
+public class AsyncLogWriterTest {
+
+    private final Logger logger = Logger.getAnonymousLogger();
+    private final List<String> messages = new ArrayList<>();
+    private final CountDownLatch published = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AsyncLogWriter writer;
+
+    /**
+     * Collects the messages; the record "block" stops the writer until it is released.
+     */
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            if ("block".equals(record.getMessage())) {
+                published.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (messages) {
+                messages.add(record.getMessage());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        writer.close();
+    }
+
+    private static LogRecord record(String message) {
+        return new LogRecord(Level.INFO, message);
+    }
+
+    @Test
+    public void closeWritesTheQueuedRecords() {
+        writer = new AsyncLogWriter(logger, 16);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(writer.write(record("record " + i)));
+        }
+        writer.close();
+        synchronized (messages) {
+            assertEquals(10, messages.size());
+            assertEquals("record 0", messages.get(0));
+            assertEquals("record 9", messages.get(9));
+        }
+    }
+
+    @Test
+    public void fullBufferDropsRecords() throws Exception {
+        writer = new AsyncLogWriter(logger, 2);
+        assertTrue(writer.write(record("block")));
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        assertTrue(writer.write(record("first")));
+        assertTrue(writer.write(record("second")));
+        assertFalse(writer.write(record("dropped")));
+        release.countDown();
+        writer.close();
+        synchronized (messages) {
+            assertEquals("[block, first, second, {0} log records dropped, the buffer was full]", messages.toString());
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.Configuration;
+import de.beit.jee.config.TestConfiguration;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link Batch}.
+ *
+ * @author Markus Pauer
+ */
+public class BatchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AsyncExecutor executor;
+
+    public interface Customers {
+
+        @Bulk("getCustomers")
+        String getCustomer(String id);
+
+        List<String> getCustomers(List<String> ids);
+
+        String getAddress(String id);
+
+        Map<String, String> getAddresses(List<String> ids);
+
+    }
+
+    /**
+     * Answers in memory and records the calls.
+     */
+    private static class Backend implements Customers {
+
+        private final List<List<String>> bulkCalls = new ArrayList<>();
+        private final AtomicInteger singleCalls = new AtomicInteger();
+
+        @Override
+        public String getCustomer(String id) {
+            singleCalls.incrementAndGet();
+            return "customer " + id;
+        }
+
+        @Override
+        public synchronized List<String> getCustomers(List<String> ids) {
+            bulkCalls.add(ids);
+            List<String> customers = new ArrayList<>();
+            for (String id : ids) {
+                customers.add("customer " + id);
+            }
+            return customers;
+        }
+
+        @Override
+        public String getAddress(String id) {
+            singleCalls.incrementAndGet();
+            return "address " + id;
+        }
+
+        @Override
+        public synchronized Map<String, String> getAddresses(List<String> ids) {
+            bulkCalls.add(ids);
+            Map<String, String> addresses = new HashMap<>();
+            for (String id : ids) {
+                addresses.put(id, "address " + id);
+            }
+            return addresses;
+        }
+
+        synchronized List<List<String>> getBulkCalls() {
+            return new ArrayList<>(bulkCalls);
+        }
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        executor = TestBeans.asyncExecutor(TestConfiguration.create(folder.getRoot(), ""));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private <T> Batch<T> batch(Class<T> type, T endpoint, String properties) throws IOException {
+        Configuration configuration = TestConfiguration.create(folder.newFolder(), properties);
+        return new Batch<>(type, endpoint, executor, BatchOptions.create(type, configuration));
+    }
+
+    private static Call<Customers, String> customer(final String id) {
+        return new Call<Customers, String>() {
+            @Override
+            public String call(Customers endpoint) {
+                return endpoint.getCustomer(id);
+            }
+        };
+    }
+
+    private static Call<Customers, String> address(final String id) {
+        return new Call<Customers, String>() {
+            @Override
+            public String call(Customers endpoint) {
+                return endpoint.getAddress(id);
+            }
+        };
+    }
+
+    @Test
+    public void callsAreMergedIntoOneBulkCall() throws Exception {
+        Backend backend = new Backend();
+        Batch<Customers> batch = batch(Customers.class, backend, Customers.class.getName() + ".batch.window = 60000\n");
+        List<BatchCall<String>> calls = new ArrayList<>();
+        for (String id : new String[]{"1", "2", "1", "3"}) {
+            calls.add(batch.submit("getCustomer", id, customer(id)));
+        }
+        batch.flush();
+        assertEquals("customer 1", calls.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals("customer 2", calls.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals("customer 1", calls.get(2).get(5, TimeUnit.SECONDS));
+        assertEquals("customer 3", calls.get(3).get(5, TimeUnit.SECONDS));
+        assertEquals("[[1, 2, 3]]", backend.getBulkCalls().toString());
+        assertEquals(0, backend.singleCalls.get());
+    }
+
+    @Test
+    public void recordedCallsAreMergedIntoOneBulkCall() throws Exception {
+        Backend backend = new Backend();
+        Batch<Customers> batch = batch(Customers.class, backend, Customers.class.getName() + ".batch.window = 60000\n"
+                + Customers.class.getName() + ".batch.record = true\n");
+        BatchCall<String> first = batch.submit(customer("1"));
+        BatchCall<String> second = batch.submit(customer("2"));
+        batch.flush();
+        assertEquals("customer 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("customer 2", second.get(5, TimeUnit.SECONDS));
+        assertEquals("[[1, 2]]", backend.getBulkCalls().toString());
+        assertEquals(0, backend.singleCalls.get());
+    }
+
+    @Test
+    public void callsWithoutMethodRunOnceOnTheirOwn() throws Exception {
+        Backend backend = new Backend();
+        Batch<Customers> batch = batch(Customers.class, backend, Customers.class.getName() + ".batch.window = 60000\n");
+        final AtomicInteger runs = new AtomicInteger();
+        BatchCall<String> call = batch.submit(new Call<Customers, String>() {
+            @Override
+            public String call(Customers endpoint) {
+                runs.incrementAndGet();
+                return endpoint.getCustomer("1");
+            }
+        });
+        assertEquals("customer 1", call.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(1, backend.singleCalls.get());
+        assertTrue(backend.getBulkCalls().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void methodWithoutBulkMethodIsRejected() throws Exception {
+        Batch<Customers> batch = batch(Customers.class, new Backend(), "");
+        batch.submit("getAddress", "1", address("1"));
+    }
+
+    @Test
+    public void windowSendsTheBulkCall() throws Exception {
+        Backend backend = new Backend();
+        Batch<Customers> batch = batch(Customers.class, backend, Customers.class.getName() + ".batch.window = 20\n");
+        BatchCall<String> first = batch.submit("getCustomer", "1", customer("1"));
+        BatchCall<String> second = batch.submit("getCustomer", "2", customer("2"));
+        assertEquals("customer 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("customer 2", second.get(5, TimeUnit.SECONDS));
+        assertEquals("[[1, 2]]", backend.getBulkCalls().toString());
+    }
+
+    @Test
+    public void fullBatchIsSentAtOnce() throws Exception {
+        Backend backend = new Backend();
+        Batch<Customers> batch = batch(Customers.class, backend, Customers.class.getName() + ".batch.window = 60000\n"
+                + Customers.class.getName() + ".batch.maxSize = 2\n");
+        BatchCall<String> first = batch.submit("getCustomer", "1", customer("1"));
+        BatchCall<String> second = batch.submit("getCustomer", "2", customer("2"));
+        assertEquals("customer 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("customer 2", second.get(5, TimeUnit.SECONDS));
+        assertEquals("[[1, 2]]", backend.getBulkCalls().toString());
+    }
+
+    @Test
+    public void propertyNamesABulkMethodWithMapResult() throws Exception {
+        Backend backend = new Backend();
+        Batch<Customers> batch = batch(Customers.class, backend, Customers.class.getName() + ".batch.window = 60000\n"
+                + Customers.class.getName() + ".bulk.getAddress = getAddresses\n");
+        BatchCall<String> first = batch.submit("getAddress", "1", address("1"));
+        BatchCall<String> second = batch.submit("getAddress", "2", address("2"));
+        batch.flush();
+        assertEquals("address 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("address 2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, backend.getBulkCalls().size());
+        assertEquals(0, backend.singleCalls.get());
+    }
+
+    @Test
+    public void failedBulkCallFailsAllCalls() throws Exception {
+        Batch<Customers> batch = batch(Customers.class, new Backend() {
+            @Override
+            public List<String> getCustomers(List<String> ids) {
+                throw new ProcessingException("refused");
+            }
+        }, Customers.class.getName() + ".batch.window = 60000\n");
+        List<BatchCall<String>> calls = new ArrayList<>();
+        calls.add(batch.submit("getCustomer", "1", customer("1")));
+        calls.add(batch.submit("getCustomer", "2", customer("2")));
+        batch.flush();
+        for (BatchCall<String> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+                fail("call of a failed bulk call");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof ProcessingException);
+            }
+        }
+    }
+
+    @Test
+    public void keyMissingInTheBulkResultFailsItsCall() throws Exception {
+        Batch<Customers> batch = batch(Customers.class, new Backend() {
+            @Override
+            public synchronized Map<String, String> getAddresses(List<String> ids) {
+                Map<String, String> addresses = super.getAddresses(ids);
+                addresses.remove("2");
+                return addresses;
+            }
+        }, Customers.class.getName() + ".batch.window = 60000\n"
+                + Customers.class.getName() + ".bulk.getAddress = getAddresses\n");
+        BatchCall<String> first = batch.submit("getAddress", "1", address("1"));
+        BatchCall<String> second = batch.submit("getAddress", "2", address("2"));
+        batch.flush();
+        assertEquals("address 1", first.get(5, TimeUnit.SECONDS));
+        try {
+            second.get(5, TimeUnit.SECONDS);
+            fail("call of a missing key");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NotFoundException);
+        }
+    }
+
+    @Test
+    public void nullBulkResultFailsAllCalls() throws Exception {
+        Batch<Customers> batch = batch(Customers.class, new Backend() {
+            @Override
+            public List<String> getCustomers(List<String> ids) {
+                return null;
+            }
+        }, Customers.class.getName() + ".batch.window = 60000\n");
+        List<BatchCall<String>> calls = new ArrayList<>();
+        calls.add(batch.submit("getCustomer", "1", customer("1")));
+        calls.add(batch.submit("getCustomer", "2", customer("2")));
+        batch.flush();
+        for (BatchCall<String> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+                fail("call of a null bulk result");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof ProcessingException);
+            }
+        }
+    }
+
+    public interface Orders {
+
+        String getOrder(String id);
+
+    }
+
+    @Test
+    public void callsWithoutBulkMethodRunOnceWithBoundedParallelism() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Batch<Orders> batch = batch(Orders.class, new Orders() {
+            @Override
+            public String getOrder(String id) {
+                int current = running.incrementAndGet();
+                while (current > maxRunning.get()) {
+                    maxRunning.compareAndSet(maxRunning.get(), current);
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return "order " + id;
+            }
+        }, Orders.class.getName() + ".batch.parallelism = 2\n");
+        final AtomicInteger runs = new AtomicInteger();
+        List<BatchCall<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final String id = Integer.toString(i);
+            calls.add(batch.submit(new Call<Orders, String>() {
+                @Override
+                public String call(Orders endpoint) {
+                    runs.incrementAndGet();
+                    return endpoint.getOrder(id);
+                }
+            }));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertEquals("order " + i, calls.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(8, runs.get());
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the tracing of the {@link ClientLoggingFilter} against a local server.
+ *
+ * @author Markus Pauer
+ */
+public class ClientLoggingFilterTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientLoggingFilter.class.getName());
+
+    private final BlockingQueue<LogRecord> records = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> correlationIds = new LinkedBlockingQueue<>();
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private TestServer server;
+    private ClientLoggingFilter filter;
+    private Client client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String id = exchange.getRequestHeaders().getFirst("X-Correlation-ID");
+                correlationIds.add(id != null ? id : "none");
+                try (InputStream in = exchange.getRequestBody()) {
+                    while (in.read() != -1) {
+                        // consume the request body
+                    }
+                }
+                int status = exchange.getRequestURI().getPath().endsWith("/missing") ? 404 : 200;
+                TestServer.respond(exchange, status, "text/plain", "hello");
+            }
+        });
+        LOGGER.addHandler(handler);
+        LOGGER.setUseParentHandlers(false);
+        filter = new ClientLoggingFilter(16);
+        client = new ResteasyClientBuilder().register(filter).build();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        filter.close();
+        LOGGER.removeHandler(handler);
+        LOGGER.setUseParentHandlers(true);
+        server.close();
+    }
+
+    private int post(String path, String body) {
+        Response response = client.target(server.getUrl() + path).request().post(Entity.text(body));
+        try {
+            return response.getStatus();
+        } finally {
+            response.close();
+        }
+    }
+
+    @Test
+    public void withoutTracingNothingIsAdded() throws Exception {
+        assertEquals(200, post("/customer", "abc"));
+        assertEquals("none", correlationIds.poll(5, TimeUnit.SECONDS));
+        assertNull(records.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sampledCallsAreTracedWithTheirSizes() throws Exception {
+        filter.configure(1, 0, false, "X-Correlation-ID");
+        assertEquals(200, post("/customer", "0123456789"));
+        String id = correlationIds.poll(5, TimeUnit.SECONDS);
+        LogRecord record = records.poll(5, TimeUnit.SECONDS);
+        assertNotNull(record);
+        assertEquals(Level.INFO, record.getLevel());
+        Object[] parameters = record.getParameters();
+        assertEquals("POST", parameters[0]);
+        assertEquals(200, parameters[2]);
+        assertEquals(10L, parameters[4]);
+        assertEquals(5, parameters[5]);
+        assertEquals(id, parameters[6]);
+    }
+
+    @Test
+    public void failedCallsAreTraced() throws Exception {
+        filter.configure(0, 0, true, "X-Correlation-ID");
+        assertEquals(200, post("/customer", "abc"));
+        assertEquals(404, post("/missing", "abc"));
+        LogRecord record = records.poll(5, TimeUnit.SECONDS);
+        assertNotNull(record);
+        assertEquals(404, record.getParameters()[2]);
+        assertNull(records.poll(100, TimeUnit.MILLISECONDS));
+        String first = correlationIds.poll(5, TimeUnit.SECONDS);
+        String second = correlationIds.poll(5, TimeUnit.SECONDS);
+        assertNotEquals("none", first);
+        assertNotEquals(first, second);
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.core.Response;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link CoalescingInterceptor}.
+ *
+ * @author Markus Pauer
+ */
+public class CoalescingInterceptorTest {
+
+    private static final int CALLERS = 5;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+    public interface Resource {
+
+        @GET
+        List<String> get(String id);
+
+        @GET
+        Reader read(String id);
+
+        @POST
+        List<String> post(String id);
+
+    }
+
+    /**
+     * Blocks every call until it is released and counts the calls.
+     */
+    private static final class BlockingResource implements Resource {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private void block() {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public List<String> get(String id) {
+            block();
+            List<String> result = new ArrayList<>();
+            result.add(id);
+            return result;
+        }
+
+        @Override
+        public Reader read(String id) {
+            block();
+            return new StringReader(id);
+        }
+
+        @Override
+        public List<String> post(String id) {
+            return get(id);
+        }
+
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    private Resource proxy(Resource target) {
+        return new EndpointProxy<>(Resource.class, "http://localhost", target,
+                new EndpointInterceptor[]{new CoalescingInterceptor()}).get(null);
+    }
+
+    /**
+     * Start the calls and release the target once the leader runs and all others wait for it.
+     */
+    private <R> List<R> callConcurrently(final BlockingResource target, final Call<Resource, R> call) throws Exception {
+        final Resource proxy = proxy(target);
+        final List<Thread> threads = new ArrayList<>();
+        List<Future<R>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(callers.submit(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    return call.call(proxy);
+                }
+            }));
+        }
+        assertTrue(target.started.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiting(threads) < CALLERS && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        target.release.countDown();
+        List<R> results = new ArrayList<>();
+        for (Future<R> future : futures) {
+            results.add(future.get(5, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private static int waiting(List<Thread> threads) {
+        synchronized (threads) {
+            int waiting = 0;
+            for (Thread thread : threads) {
+                Thread.State state = thread.getState();
+                if (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING) {
+                    waiting++;
+                }
+            }
+            return waiting;
+        }
+    }
+
+    @Test
+    public void identicalConcurrentCallsShareOneCall() throws Exception {
+        BlockingResource target = new BlockingResource();
+        List<List<String>> results = callConcurrently(target, new Call<Resource, List<String>>() {
+            @Override
+            public List<String> call(Resource endpoint) {
+                return endpoint.get("4711");
+            }
+        });
+        assertEquals(1, target.calls.get());
+        for (List<String> result : results) {
+            assertSame(results.get(0), result);
+        }
+    }
+
+    @Test
+    public void singleUseResultsAreNotShared() throws Exception {
+        BlockingResource target = new BlockingResource();
+        target.release.countDown();
+        Resource proxy = proxy(target);
+        proxy.read("4711");
+        proxy.read("4711");
+        assertEquals(2, target.calls.get());
+    }
+
+    @Test
+    public void modifyingCallsAreNotCoalesced() throws Exception {
+        BlockingResource target = new BlockingResource();
+        List<List<String>> results = callConcurrently(target, new Call<Resource, List<String>>() {
+            @Override
+            public List<String> call(Resource endpoint) {
+                return endpoint.post("4711");
+            }
+        });
+        assertEquals(CALLERS, target.calls.get());
+        assertFalse(results.get(0) == results.get(1));
+    }
+
+    @Test
+    public void callsWithOtherArgumentsAreNotCoalesced() throws Exception {
+        BlockingResource target = new BlockingResource();
+        target.release.countDown();
+        Resource proxy = proxy(target);
+        assertEquals("[1]", proxy.get("1").toString());
+        assertEquals("[2]", proxy.get("2").toString());
+        assertEquals(2, target.calls.get());
+    }
+
+    @Test
+    public void singleUseAndVoidResultsAreNotShareable() {
+        assertFalse(CoalescingInterceptor.isShareable(void.class));
+        assertFalse(CoalescingInterceptor.isShareable(Void.class));
+        assertFalse(CoalescingInterceptor.isShareable(byte[].class));
+        assertFalse(CoalescingInterceptor.isShareable(Response.class));
+        assertFalse(CoalescingInterceptor.isShareable(InputStream.class));
+        assertFalse(CoalescingInterceptor.isShareable(StringReader.class));
+        assertFalse(CoalescingInterceptor.isShareable(Iterator.class));
+        assertTrue(CoalescingInterceptor.isShareable(List.class));
+        assertTrue(CoalescingInterceptor.isShareable(String.class));
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.model.User;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the {@link EndpointProxy}.
+ *
+ * @author Markus Pauer
+ */
+public class EndpointProxyTest {
+
+    public interface Greeting {
+
+        String greet(String name);
+
+    }
+
+    /**
+     * Answers with the name of the User bound to the calling thread.
+     */
+    private static class UserGreeting implements Greeting {
+
+        @Override
+        public String greet(String name) {
+            User user = UserContext.getUser();
+            return name + " from " + (user != null ? user.getName() : "nobody");
+        }
+
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        return user;
+    }
+
+    @Test
+    public void anonymousProxyIsShared() {
+        EndpointProxy<Greeting> proxy = new EndpointProxy<>(Greeting.class, "http://localhost", new UserGreeting(), new EndpointInterceptor[0]);
+        assertSame(proxy.get(null), proxy.get(null));
+        assertNotSame(proxy.get(user("alice")), proxy.get(user("alice")));
+        assertEquals("http://localhost", proxy.getUrl());
+    }
+
+    @Test
+    public void userIsBoundOnlyDuringTheCall() {
+        EndpointProxy<Greeting> proxy = new EndpointProxy<>(Greeting.class, "http://localhost", new UserGreeting(), new EndpointInterceptor[0]);
+        Greeting alice = proxy.get(user("alice"));
+        Greeting bob = proxy.get(user("bob"));
+        assertEquals("hello from alice", alice.greet("hello"));
+        assertEquals("hello from bob", bob.greet("hello"));
+        assertEquals("hello from nobody", proxy.get(null).greet("hello"));
+        assertNull(UserContext.getUser());
+    }
+
+    @Test
+    public void callsPassTheInterceptorsInOrder() {
+        final List<String> passed = new ArrayList<>();
+        EndpointInterceptor first = new EndpointInterceptor() {
+            @Override
+            public Object invoke(EndpointInvocation invocation) throws Exception {
+                passed.add("first " + invocation.getArgs()[0]);
+                return invocation.proceed();
+            }
+        };
+        EndpointInterceptor second = new EndpointInterceptor() {
+            @Override
+            public Object invoke(EndpointInvocation invocation) throws Exception {
+                passed.add("second " + invocation.getUser().getName());
+                return "intercepted " + invocation.proceed();
+            }
+        };
+        EndpointProxy<Greeting> proxy = new EndpointProxy<>(Greeting.class, "http://localhost", new UserGreeting(), new EndpointInterceptor[]{first, second});
+        assertEquals("intercepted hi from carol", proxy.get(user("carol")).greet("hi"));
+        assertEquals("[first hi, second carol]", passed.toString());
+    }
+
+}
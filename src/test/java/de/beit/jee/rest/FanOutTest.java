@@ -0,0 +1,163 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.beit.jee.config.TestConfiguration;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link FanOut} against a local server.
+ *
+ * @author Markus Pauer
+ */
+public class FanOutTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestServer server;
+    private AsyncExecutor executor;
+    private ClientRegistry clientRegistry;
+
+    @Path("/")
+    public interface Customers {
+
+        @GET
+        @Path("customer/{id}")
+        @Produces("text/plain")
+        String getCustomer(@PathParam("id") String id);
+
+    }
+
+    @Path("/")
+    public interface Orders {
+
+        @GET
+        @Path("order/{id}")
+        @Produces("text/plain")
+        String getOrder(@PathParam("id") String id);
+
+    }
+
+    @Path("/")
+    public interface Unconfigured {
+
+        @GET
+        String get();
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.endsWith("/slow")) {
+                    try {
+                        Thread.sleep(2000);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                TestServer.respond(exchange, 200, "text/plain", path);
+            }
+        });
+        executor = TestBeans.asyncExecutor(TestConfiguration.create(folder.getRoot(), ""));
+        clientRegistry = TestBeans.clientRegistry(TestConfiguration.create(folder.newFolder(),
+                Customers.class.getName() + ".endpoint = " + server.getUrl() + "\n"
+                + Orders.class.getName() + ".endpoint = " + server.getUrl() + "\n"
+                + "restclient.metrics.enabled = false\n"), executor);
+    }
+
+    @After
+    public void tearDown() {
+        clientRegistry.close();
+        executor.shutdown();
+        server.close();
+    }
+
+    private static Call<Customers, String> customer(final String id) {
+        return new Call<Customers, String>() {
+            @Override
+            public String call(Customers endpoint) {
+                return endpoint.getCustomer(id);
+            }
+        };
+    }
+
+    @Test
+    public void callsOfSeveralEndpointsRunInParallel() {
+        FanOut fanOut = new FanOut(clientRegistry, executor, null);
+        FanOutCall<String> customer = fanOut.add(Customers.class, customer("4711"));
+        FanOutCall<String> order = fanOut.add(Orders.class, new Call<Orders, String>() {
+            @Override
+            public String call(Orders endpoint) {
+                return endpoint.getOrder("42");
+            }
+        });
+        List<FanOutCall<?>> calls = fanOut.execute(5, TimeUnit.SECONDS);
+        assertEquals(2, calls.size());
+        assertEquals("/customer/4711", customer.getResult());
+        assertEquals("/order/42", order.getResult());
+        assertTrue(customer.isSuccessful() && order.isSuccessful());
+        assertTrue(customer.getDuration(TimeUnit.NANOSECONDS) >= 0);
+    }
+
+    @Test
+    public void slowCallTimesOutWithoutDelayingTheOthers() {
+        FanOut fanOut = new FanOut(clientRegistry, executor, null);
+        FanOutCall<String> slow = fanOut.add(Customers.class, customer("slow"), 200, TimeUnit.MILLISECONDS);
+        FanOutCall<String> fast = fanOut.add(Customers.class, customer("4711"));
+        long start = System.nanoTime();
+        fanOut.execute(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        assertEquals(FanOutCall.Status.TIMED_OUT, slow.getStatus());
+        assertEquals(FanOutCall.Status.COMPLETED, fast.getStatus());
+        assertEquals("/customer/4711", fast.getResult());
+    }
+
+    @Test
+    public void unconfiguredEndpointFails() {
+        FanOut fanOut = new FanOut(clientRegistry, executor, null);
+        FanOutCall<String> call = fanOut.add(Unconfigured.class, new Call<Unconfigured, String>() {
+            @Override
+            public String call(Unconfigured endpoint) {
+                return endpoint.get();
+            }
+        });
+        fanOut.execute(1, TimeUnit.SECONDS);
+        assertEquals(FanOutCall.Status.FAILED, call.getStatus());
+        assertTrue(call.getException() instanceof IllegalStateException);
+    }
+
+}
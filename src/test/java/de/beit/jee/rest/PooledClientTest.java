@@ -0,0 +1,74 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.rest.stream.StreamingClientBuilder;
+import org.apache.http.pool.ConnPoolControl;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link PooledClient}.
+ *
+ * @author Markus Pauer
+ */
+public class PooledClientTest {
+
+    private PooledClient pooledClient;
+
+    @Before
+    public void setUp() {
+        ResteasyClient client = new StreamingClientBuilder().connectionPoolSize(8).maxPooledPerRoute(4).build();
+        pooledClient = new PooledClient(client, 60);
+    }
+
+    @After
+    public void tearDown() {
+        pooledClient.close();
+    }
+
+    @Test
+    public void poolControlShowsConfiguredLimits() {
+        ConnPoolControl<?> poolControl = pooledClient.getPoolControl();
+        assertNotNull(poolControl);
+        assertEquals(8, poolControl.getMaxTotal());
+        assertEquals(4, poolControl.getDefaultMaxPerRoute());
+        assertEquals(0, poolControl.getTotalStats().getLeased());
+    }
+
+    @Test
+    public void evictsIdleConnectionsOfAnEmptyPool() {
+        pooledClient.evictIdleConnections();
+        assertEquals(0, pooledClient.getPoolControl().getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void retiredClientIsOnlyClosedAfterItsRetirement() {
+        long beforeRetirement = System.currentTimeMillis() - 1;
+        assertFalse(pooledClient.isRetiredBefore(Long.MAX_VALUE));
+        pooledClient.retire();
+        assertFalse(pooledClient.isRetiredBefore(beforeRetirement));
+        assertTrue(pooledClient.isRetiredBefore(Long.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.TestConfiguration;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the {@link SslContextProvider}.
+ *
+ * @author Markus Pauer
+ */
+public class SslContextProviderTest {
+
+    private static final String PASSWORD = "changeit";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String keyStore;
+    private String keyStorePassword;
+    private File keyStoreFile;
+
+    @Before
+    public void setUp() throws Exception {
+        keyStore = System.getProperty("javax.net.ssl.keyStore");
+        keyStorePassword = System.getProperty("javax.net.ssl.keyStorePassword");
+        keyStoreFile = new File(folder.getRoot(), "keystore.jks");
+        writeKeyStore();
+        System.setProperty("javax.net.ssl.keyStore", keyStoreFile.getPath());
+        System.setProperty("javax.net.ssl.keyStorePassword", PASSWORD);
+    }
+
+    @After
+    public void tearDown() {
+        restore("javax.net.ssl.keyStore", keyStore);
+        restore("javax.net.ssl.keyStorePassword", keyStorePassword);
+    }
+
+    private static void restore(String name, String value) {
+        if (value == null) {
+            System.clearProperty(name);
+        } else {
+            System.setProperty(name, value);
+        }
+    }
+
+    private void writeKeyStore() throws GeneralSecurityException, IOException {
+        KeyStore store = KeyStore.getInstance("JKS");
+        store.load(null, null);
+        try (OutputStream os = new FileOutputStream(keyStoreFile)) {
+            store.store(os, PASSWORD.toCharArray());
+        }
+    }
+
+    private SslContextProvider createProvider(String properties) throws IOException {
+        SslContextProvider provider = new SslContextProvider();
+        TestConfiguration.set(provider, "configuration",
+                TestConfiguration.create(folder.newFolder(), properties));
+        provider.init();
+        return provider;
+    }
+
+    private static Object delegate(SslContextProvider provider) throws ReflectiveOperationException {
+        Field keyManager = SslContextProvider.class.getDeclaredField("keyManager");
+        keyManager.setAccessible(true);
+        Field delegate = ReloadingKeyManager.class.getDeclaredField("delegate");
+        delegate.setAccessible(true);
+        return delegate.get(keyManager.get(provider));
+    }
+
+    @Test
+    public void noContextWithoutKeyStore() throws Exception {
+        System.clearProperty("javax.net.ssl.keyStore");
+        assertNull(createProvider("").getSslContext());
+    }
+
+    @Test
+    public void sessionCacheIsConfigured() throws Exception {
+        SSLContext context = createProvider("restclient.ssl.sessionCacheSize = 10\n"
+                + "restclient.ssl.sessionTimeout = 60\n").getSslContext();
+        assertNotNull(context);
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        assertEquals(10, sessionContext.getSessionCacheSize());
+        assertEquals(60, sessionContext.getSessionTimeout());
+    }
+
+    @Test
+    public void changedKeyStoreIsReloadedIntoTheSameContext() throws Exception {
+        SslContextProvider provider = createProvider("");
+        SSLContext context = provider.getSslContext();
+        Object loaded = delegate(provider);
+
+        provider.checkKeyStore();
+        assertSame(loaded, delegate(provider));
+
+        writeKeyStore();
+        keyStoreFile.setLastModified(keyStoreFile.lastModified() + 1000);
+        provider.checkKeyStore();
+        assertNotSame(loaded, delegate(provider));
+        assertSame(context, provider.getSslContext());
+    }
+
+    @Test
+    public void brokenKeyStoreKeepsTheLoadedCertificate() throws Exception {
+        SslContextProvider provider = createProvider("");
+        Object loaded = delegate(provider);
+
+        TestConfiguration.write(keyStoreFile, "broken");
+        keyStoreFile.setLastModified(keyStoreFile.lastModified() + 1000);
+        provider.checkKeyStore();
+        assertSame(loaded, delegate(provider));
+        assertNotNull(provider.getSslContext());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest;
+
+import de.beit.jee.config.Configuration;
+import de.beit.jee.config.TestConfiguration;
+import de.beit.jee.rest.metrics.MetricsRegistry;
+
+/**
+ * Creates the beans of the client outside of a container.
+ *
+ * @author Markus Pauer
+ */
+public final class TestBeans {
+
+    private TestBeans() {
+    }
+
+    /**
+     * Create a started executor, it must be shut down by the test.
+     *
+     * @param configuration - Configuration of the pool sizes
+     * @return executor
+     */
+    public static AsyncExecutor asyncExecutor(Configuration configuration) {
+        AsyncExecutor executor = new AsyncExecutor();
+        TestConfiguration.set(executor, "configuration", configuration);
+        executor.init();
+        return executor;
+    }
+
+    /**
+     * Create a started registry without client certificate, it must be closed by the test.
+     *
+     * @param configuration - Configuration of the endpoints
+     * @param executor - executor of asynchronous calls
+     * @return registry
+     */
+    public static ClientRegistry clientRegistry(Configuration configuration, AsyncExecutor executor) {
+        SslContextProvider sslContextProvider = new SslContextProvider();
+        TestConfiguration.set(sslContextProvider, "configuration", configuration);
+        sslContextProvider.init();
+        ClientRegistry registry = new ClientRegistry();
+        TestConfiguration.set(registry, "configuration", configuration);
+        TestConfiguration.set(registry, "asyncExecutor", executor);
+        TestConfiguration.set(registry, "sslContextProvider", sslContextProvider);
+        TestConfiguration.set(registry, "metricsRegistry", new MetricsRegistry());
+        registry.init();
+        return registry;
+    }
+
+    /**
+     * Create the client facade over the given beans.
+     *
+     * @param clientRegistry - registry of the endpoints
+     * @param executor - executor of asynchronous calls
+     * @return client
+     */
+    public static RestClient restClient(ClientRegistry clientRegistry, AsyncExecutor executor) {
+        RestClient restClient = new RestClient();
+        TestConfiguration.set(restClient, "clientRegistry", clientRegistry);
+        TestConfiguration.set(restClient, "asyncExecutor", executor);
+        return restClient;
+    }
+
+    /**
+     * Create a proxy that passes the Interceptors before it calls the target.
+     *
+     * @param <T> endpoint interface
+     * @param type - endpoint interface
+     * @param target - implementation of the endpoint, instead of the HTTP client
+     * @param interceptors - Interceptors in calling order
+     * @return anonymous proxy
+     */
+    public static <T> T proxy(Class<T> type, T target, EndpointInterceptor... interceptors) {
+        return new EndpointProxy<>(type, "http://localhost", target, interceptors).get(null);
+    }
+
+}
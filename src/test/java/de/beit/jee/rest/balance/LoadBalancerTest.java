@@ -0,0 +1,168 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.balance;
+
+import de.beit.jee.rest.TestBeans;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.ws.rs.ProcessingException;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link LoadBalancer}.
+ *
+ * @author Markus Pauer
+ */
+public class LoadBalancerTest {
+
+    private final LoadBalancer loadBalancer = new LoadBalancer("test");
+
+    public interface Echo {
+
+        String url();
+
+    }
+
+    /**
+     * Answers with the chosen URL, calls of the URL "http://b" fail.
+     */
+    private static class Backends implements Echo {
+
+        @Override
+        public String url() {
+            String url = LoadBalancer.CURRENT.get().getUrl();
+            if ("http://b".equals(url)) {
+                throw new ProcessingException("refused");
+            }
+            return url;
+        }
+
+    }
+
+    private Echo proxy() {
+        return TestBeans.proxy(Echo.class, new Backends(), loadBalancer);
+    }
+
+    private static String call(Echo echo) {
+        try {
+            return echo.url();
+        } catch (ProcessingException ex) {
+            return "failed";
+        }
+    }
+
+    private Backend backend(String url) {
+        for (Backend backend : loadBalancer.getBackends()) {
+            if (backend.getUrl().equals(url)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException(url);
+    }
+
+    @Test
+    public void roundRobinUsesTheUrlsInTurn() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://c"), LoadBalancer.Strategy.ROUND_ROBIN, 0, 1000);
+        Echo echo = proxy();
+        String first = echo.url();
+        String second = echo.url();
+        assertNotEquals(first, second);
+        assertEquals(first, echo.url());
+        assertEquals(0, backend(first).getOutstanding());
+    }
+
+    @Test
+    public void failingUrlIsEjected() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://b"), LoadBalancer.Strategy.ROUND_ROBIN, 2, 60000);
+        Echo echo = proxy();
+        for (int i = 0; i < 4; i++) {
+            call(echo);
+        }
+        assertTrue(backend("http://b").isEjected());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("http://a", echo.url());
+        }
+    }
+
+    @Test
+    public void allUrlsAreUsedIfNoneIsAvailable() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://c"), LoadBalancer.Strategy.ROUND_ROBIN, 0, 1000);
+        backend("http://a").setHealthy(false);
+        Echo echo = proxy();
+        assertEquals("http://c", echo.url());
+        assertEquals("http://c", echo.url());
+        backend("http://c").setHealthy(false);
+        assertNotEquals(echo.url(), echo.url());
+    }
+
+    @Test
+    public void leastOutstandingPrefersIdleUrls() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://c"), LoadBalancer.Strategy.LEAST_OUTSTANDING, 0, 1000);
+        backend("http://a").started();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("http://c", loadBalancer.choose().getUrl());
+        }
+    }
+
+    @Test
+    public void ewmaPrefersFastUrls() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://c"), LoadBalancer.Strategy.EWMA, 0, 1000);
+        backend("http://a").started();
+        backend("http://a").finished(1000000000L, false, 0, 1000);
+        backend("http://c").started();
+        backend("http://c").finished(1000000L, false, 0, 1000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("http://c", loadBalancer.choose().getUrl());
+        }
+    }
+
+    @Test
+    public void furtherAttemptsChooseAnotherUrl() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://c", "http://d"), LoadBalancer.Strategy.EWMA, 0, 1000);
+        Set<String> tried = new HashSet<>();
+        LoadBalancer.setTriedUrls(tried);
+        try {
+            loadBalancer.choose();
+            loadBalancer.choose();
+            loadBalancer.choose();
+            assertEquals(3, tried.size());
+        } finally {
+            LoadBalancer.setTriedUrls(null);
+        }
+    }
+
+    @Test
+    public void reconfiguredUrlsKeepTheirStatistics() {
+        loadBalancer.configure(Arrays.asList("http://a", "http://b"), LoadBalancer.Strategy.ROUND_ROBIN, 1, 60000);
+        Echo echo = proxy();
+        call(echo);
+        call(echo);
+        Backend ejected = backend("http://b");
+        loadBalancer.configure(Arrays.asList("http://b", "http://c"), LoadBalancer.Strategy.ROUND_ROBIN, 1, 60000);
+        assertSame(ejected, backend("http://b"));
+        assertTrue(ejected.isEjected());
+        assertEquals(2, loadBalancer.getBackends().size());
+        assertFalse(backend("http://c").isEjected());
+    }
+
+}
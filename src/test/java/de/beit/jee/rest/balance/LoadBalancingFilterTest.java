@@ -0,0 +1,120 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.balance;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.beit.jee.config.TestConfiguration;
+import de.beit.jee.rest.AsyncExecutor;
+import de.beit.jee.rest.ClientRegistry;
+import de.beit.jee.rest.TestBeans;
+import de.beit.jee.rest.TestServer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.Produces;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of load balanced endpoints against two local servers.
+ *
+ * @author Markus Pauer
+ */
+public class LoadBalancingFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestServer first;
+    private TestServer second;
+    private AsyncExecutor executor;
+    private ClientRegistry clientRegistry;
+    private Greeting greeting;
+
+    @Path("/")
+    public interface Greeting {
+
+        @GET
+        @Path("greeting")
+        @Produces("text/plain")
+        String greet();
+
+    }
+
+    private static TestServer server(final String name) throws IOException {
+        return new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TestServer.respond(exchange, 200, "text/plain", name + " " + exchange.getRequestURI().getPath());
+            }
+        });
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        first = server("first");
+        second = server("second");
+        executor = TestBeans.asyncExecutor(TestConfiguration.create(folder.getRoot(), ""));
+        clientRegistry = TestBeans.clientRegistry(TestConfiguration.create(folder.newFolder(),
+                Greeting.class.getName() + ".endpoint = " + first.getUrl() + ", " + second.getUrl() + "\n"
+                + Greeting.class.getName() + ".loadBalancer.ejectAfter = 1\n"
+                + "restclient.metrics.enabled = false\n"), executor);
+        greeting = TestBeans.restClient(clientRegistry, executor).endpoint(Greeting.class);
+    }
+
+    @After
+    public void tearDown() {
+        clientRegistry.close();
+        executor.shutdown();
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void callsAreSpreadOverTheUrls() {
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            answers.add(greeting.greet());
+        }
+        Collections.sort(answers);
+        assertEquals("[first /greeting, first /greeting, second /greeting, second /greeting]", answers.toString());
+    }
+
+    @Test
+    public void unreachableUrlIsEjected() {
+        second.close();
+        int failures = 0;
+        for (int i = 0; i < 6; i++) {
+            try {
+                assertEquals("first /greeting", greeting.greet());
+            } catch (ProcessingException ex) {
+                failures++;
+            }
+        }
+        assertEquals(1, failures);
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.beit.jee.rest.TestServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import org.apache.http.client.utils.DateUtils;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link ResponseCacheFilter} against a local server.
+ *
+ * @author Markus Pauer
+ */
+public class ResponseCacheFilterTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private TestServer server;
+    private ResponseCache cache;
+    private ResteasyClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                String path = exchange.getRequestURI().getPath();
+                if (path.equals("/fresh")) {
+                    exchange.getResponseHeaders().add("Cache-Control", "Max-Age=60");
+                    TestServer.respond(exchange, 200, "text/plain", "fresh");
+                } else if (path.equals("/etag")) {
+                    exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+                    exchange.getResponseHeaders().add("ETag", ETAG);
+                    if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        notModified.incrementAndGet();
+                        exchange.sendResponseHeaders(304, -1);
+                        exchange.close();
+                    } else {
+                        TestServer.respond(exchange, 200, "text/plain", "tagged");
+                    }
+                } else if (path.equals("/large")) {
+                    exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+                    exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                    // chunked, so the size is unknown until the body was read
+                    exchange.sendResponseHeaders(200, 0);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(largeBody().getBytes("US-ASCII"));
+                    }
+                } else {
+                    exchange.getResponseHeaders().add("Cache-Control", "no-store");
+                    TestServer.respond(exchange, 200, "text/plain", "private");
+                }
+            }
+        });
+        cache = new ResponseCache(16 * 4096, 1000, false);
+        client = new ResteasyClientBuilder().build();
+        client.register(new ResponseCacheFilter(cache));
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private static String largeBody() {
+        char[] body = new char[5000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (char) ('a' + i % 26);
+        }
+        return new String(body);
+    }
+
+    private String get(String path) {
+        WebTarget target = client.target(server.getUrl() + path);
+        return target.request().get(String.class);
+    }
+
+    @Test
+    public void freshResponseIsAnsweredFromTheCache() {
+        assertEquals("fresh", get("/fresh"));
+        assertEquals("fresh", get("/fresh"));
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void staleResponseIsRevalidated() {
+        assertEquals("tagged", get("/etag"));
+        assertEquals("tagged", get("/etag"));
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    @Test
+    public void noStoreResponseIsNotCached() {
+        assertEquals("private", get("/private"));
+        assertEquals("private", get("/private"));
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void largeResponseOfUnknownLengthPassesThroughUnchanged() {
+        assertEquals(largeBody(), get("/large"));
+        assertEquals(largeBody(), get("/large"));
+        assertEquals(2, requests.get());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void bufferingStopsAtTheEntryLimit() throws IOException {
+        byte[] body = largeBody().getBytes("US-ASCII");
+        final AtomicInteger read = new AtomicInteger();
+        ResponseContext context = new ResponseContext(new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int count = super.read(b, off, len);
+                read.addAndGet(Math.max(count, 0));
+                return count;
+            }
+        });
+        assertNull(ResponseCacheFilter.buffer(context.proxy(), 1000));
+        assertTrue(read.get() <= 1001);
+        assertArrayEquals(body, readAll(context.entityStream));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void modifyingRequestInvalidatesTheResource() {
+        assertEquals("fresh", get("/fresh"));
+        Response response = client.target(server.getUrl() + "/fresh").request().delete();
+        response.close();
+        assertEquals("fresh", get("/fresh"));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void freshnessComesFromCacheControlOrExpires() {
+        long now = 1000000;
+        assertEquals(now + 60000, ResponseCacheFilter.expires(headers("Cache-Control", "public, MAX-AGE=60"), now));
+        assertEquals(now, ResponseCacheFilter.expires(headers("Cache-Control", "no-cache, max-age=60"), now));
+        assertEquals(now, ResponseCacheFilter.expires(headers("Cache-Control", "max-age=soon"), now));
+        assertEquals(now, ResponseCacheFilter.expires(Collections.<String, List<String>>emptyMap(), now));
+        Map<String, List<String>> expires = headers("Expires", DateUtils.formatDate(new Date(2000000)));
+        expires.put("Date", Arrays.asList(DateUtils.formatDate(new Date(1000000))));
+        assertEquals(now + 1000000, ResponseCacheFilter.expires(expires, now));
+        assertEquals(now, ResponseCacheFilter.expires(headers("Expires", "0"), now));
+    }
+
+    /**
+     * Holds the entity stream of a response, all other methods are not supported.
+     */
+    private static final class ResponseContext implements InvocationHandler {
+
+        private InputStream entityStream;
+
+        ResponseContext(InputStream entityStream) {
+            this.entityStream = entityStream;
+        }
+
+        ClientResponseContext proxy() {
+            return (ClientResponseContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ClientResponseContext.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getEntityStream":
+                    return entityStream;
+                case "setEntityStream":
+                    entityStream = (InputStream) args[0];
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+    }
+
+    private static Map<String, List<String>> headers(String name, String value) {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put(name, Arrays.asList(value));
+        return headers;
+    }
+
+}
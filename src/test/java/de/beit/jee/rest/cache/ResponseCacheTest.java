@@ -0,0 +1,110 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link ResponseCache} and the freshness of {@link CachedResponse}s.
+ *
+ * @author Markus Pauer
+ */
+public class ResponseCacheTest {
+
+    private static final Map<String, List<String>> NO_HEADERS = Collections.emptyMap();
+
+    private static CachedResponse response(int bodySize, long expires) {
+        return new CachedResponse(200, NO_HEADERS, new byte[bodySize], false, expires);
+    }
+
+    @Test
+    public void entriesAreStoredPerVariant() {
+        ResponseCache cache = new ResponseCache(16 * 10000, 10000, false);
+        CachedResponse json = response(10, Long.MAX_VALUE);
+        CachedResponse xml = response(20, Long.MAX_VALUE);
+        cache.put("http://host/a", "json", json);
+        cache.put("http://host/a", "xml", xml);
+        assertEquals(json, cache.get("http://host/a", "json"));
+        assertEquals(xml, cache.get("http://host/a", "xml"));
+        assertNull(cache.get("http://host/b", "json"));
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(json.getSize() + xml.getSize(), cache.getSizeInBytes());
+    }
+
+    @Test
+    public void invalidateRemovesAllVariants() {
+        ResponseCache cache = new ResponseCache(16 * 10000, 10000, false);
+        cache.put("http://host/a", "json", response(10, Long.MAX_VALUE));
+        cache.put("http://host/a", "xml", response(10, Long.MAX_VALUE));
+        cache.put("http://host/ab", "json", response(10, Long.MAX_VALUE));
+        cache.invalidate("http://host/a");
+        assertNull(cache.get("http://host/a", "json"));
+        assertNull(cache.get("http://host/a", "xml"));
+        assertNotNull(cache.get("http://host/ab", "json"));
+    }
+
+    @Test
+    public void entryLargerThanTheLimitIsNotStored() {
+        ResponseCache cache = new ResponseCache(16 * 10000, 1000, false);
+        cache.put("http://host/a", "json", response(1000, Long.MAX_VALUE));
+        assertNull(cache.get("http://host/a", "json"));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        // a segment holds three entries of this size, all variants of one URI share a segment
+        long entrySize = response(872, 0).getSize();
+        ResponseCache cache = new ResponseCache(16 * 3 * entrySize, entrySize, false);
+        cache.put("http://host/a", "1", response(872, Long.MAX_VALUE));
+        cache.put("http://host/a", "2", response(872, Long.MAX_VALUE));
+        cache.put("http://host/a", "3", response(872, Long.MAX_VALUE));
+        assertNotNull(cache.get("http://host/a", "1"));
+        cache.put("http://host/a", "4", response(872, Long.MAX_VALUE));
+        assertNotNull(cache.get("http://host/a", "1"));
+        assertNull(cache.get("http://host/a", "2"));
+        assertNotNull(cache.get("http://host/a", "4"));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getSizeInBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void offHeapBodyIsReadable() throws Exception {
+        byte[] body = "{\"customerNr\":\"4711\"}".getBytes("UTF-8");
+        CachedResponse response = new CachedResponse(200, NO_HEADERS, body, true, 0);
+        byte[] read = new byte[body.length];
+        assertEquals(body.length, response.openBody().read(read, 0, read.length));
+        assertEquals(new String(body, "UTF-8"), new String(read, "UTF-8"));
+    }
+
+    @Test
+    public void freshnessEndsAtExpiry() {
+        CachedResponse response = response(10, 1000);
+        assertTrue(response.isFresh(999));
+        assertFalse(response.isFresh(1000));
+        assertFalse(response.isRevalidatable());
+    }
+
+}
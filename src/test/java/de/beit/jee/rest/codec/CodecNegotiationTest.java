@@ -0,0 +1,218 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.beit.jee.config.TestConfiguration;
+import de.beit.jee.rest.AsyncExecutor;
+import de.beit.jee.rest.ClientRegistry;
+import de.beit.jee.rest.TestBeans;
+import de.beit.jee.rest.TestServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link CodecNegotiation} against a local server that may or may not support Smile.
+ *
+ * @author Markus Pauer
+ */
+public class CodecNegotiationTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile boolean smileSupported = true;
+    private TestServer server;
+    private AsyncExecutor executor;
+    private ClientRegistry clientRegistry;
+    private Customers customers;
+
+    public static class Customer {
+
+        public String id;
+
+        public Customer() {
+        }
+
+        public Customer(String id) {
+            this.id = id;
+        }
+
+    }
+
+    @Path("/")
+    public interface Customers {
+
+        @GET
+        @Path("customer/{id}")
+        @Produces(MediaType.APPLICATION_JSON)
+        Customer getCustomer(@PathParam("id") String id);
+
+        @GET
+        @Path("customer/{id}")
+        @Produces(MediaType.APPLICATION_JSON)
+        String getCustomerText(@PathParam("id") String id);
+
+        @POST
+        @Path("customer")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.APPLICATION_JSON)
+        Customer saveCustomer(Customer customer);
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Codec smile = Codecs.get("smile");
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                String accept = exchange.getRequestHeaders().getFirst("Accept");
+                boolean smileRequest = contentType != null && contentType.startsWith(Codecs.SMILE.toString());
+                requests.add(exchange.getRequestMethod() + " " + (smileRequest ? "smile" : "json"));
+                if (smileRequest && !smileSupported) {
+                    TestServer.respond(exchange, 415, "text/plain", "");
+                    return;
+                }
+                Customer customer;
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    try (InputStream in = exchange.getRequestBody()) {
+                        customer = smileRequest ? (Customer) smile.read(Customer.class, Customer.class, in)
+                                : JSON.readValue(in, Customer.class);
+                    }
+                } else {
+                    String path = exchange.getRequestURI().getPath();
+                    customer = new Customer(path.substring(path.lastIndexOf('/') + 1));
+                }
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                boolean smileResponse = smileSupported && accept != null && accept.startsWith(Codecs.SMILE.toString());
+                if (smileResponse) {
+                    smile.write(customer, Customer.class, body);
+                } else {
+                    JSON.writeValue(body, customer);
+                }
+                exchange.getResponseHeaders().add("Content-Type", smileResponse ? Codecs.SMILE.toString() : MediaType.APPLICATION_JSON);
+                exchange.sendResponseHeaders(200, body.size());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+            }
+        });
+        executor = TestBeans.asyncExecutor(TestConfiguration.create(folder.getRoot(), ""));
+        clientRegistry = TestBeans.clientRegistry(TestConfiguration.create(folder.newFolder(),
+                Customers.class.getName() + ".endpoint = " + server.getUrl() + "\n"
+                + Customers.class.getName() + ".codec = smile\n"
+                + "restclient.metrics.enabled = false\n"), executor);
+        customers = TestBeans.restClient(clientRegistry, executor).endpoint(Customers.class);
+    }
+
+    @After
+    public void tearDown() {
+        clientRegistry.close();
+        executor.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void objectsAreExchangedInTheCodecFormat() {
+        assertEquals("4711", customers.getCustomer("4711").id);
+        assertEquals("42", customers.saveCustomer(new Customer("42")).id);
+        assertEquals("[GET json, POST smile]", requests.toString());
+    }
+
+    @Test
+    public void textIsReadAsJson() {
+        assertEquals("{\"id\":\"4711\"}", customers.getCustomerText("4711"));
+    }
+
+    @Test
+    public void backendWithoutCodecAnswersJson() {
+        smileSupported = false;
+        assertEquals("4711", customers.getCustomer("4711").id);
+    }
+
+    @Test
+    public void rejectedCodecFallsBackToJson() {
+        smileSupported = false;
+        assertEquals("42", customers.saveCustomer(new Customer("42")).id);
+        assertEquals("43", customers.saveCustomer(new Customer("43")).id);
+        assertEquals("[POST smile, POST json, POST json]", requests.toString());
+    }
+
+    @Test
+    public void rejectedResponseIsClosed() {
+        final Response rejected = Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).entity("no smile").build();
+        Customers target = new Customers() {
+            private boolean first = true;
+
+            @Override
+            public Customer getCustomer(String id) {
+                return new Customer(id);
+            }
+
+            @Override
+            public String getCustomerText(String id) {
+                return id;
+            }
+
+            @Override
+            public Customer saveCustomer(Customer customer) {
+                if (first) {
+                    first = false;
+                    throw new WebApplicationException(rejected);
+                }
+                return customer;
+            }
+        };
+        Customers endpoint = TestBeans.proxy(Customers.class, target,
+                new CodecNegotiation(Customers.class, Codecs.get("smile"), 60000));
+        assertEquals("42", endpoint.saveCustomer(new Customer("42")).id);
+        try {
+            rejected.hasEntity();
+            fail("response of the rejected call not closed");
+        } catch (IllegalStateException ex) {
+            // closed
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import javax.ws.rs.core.MediaType;
+import javax.xml.bind.annotation.XmlElement;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link Codecs} and the {@link JacksonCodec}.
+ *
+ * @author Markus Pauer
+ */
+public class CodecsTest {
+
+    public static class Customer {
+
+        @XmlElement(name = "customerId")
+        public String id;
+
+        public List<String> roles;
+
+    }
+
+    /**
+     * A Codec configured by class name.
+     */
+    public static class TextCodec implements Codec {
+
+        @Override
+        public MediaType getMediaType() {
+            return MediaType.TEXT_PLAIN_TYPE;
+        }
+
+        @Override
+        public boolean canEncode(Class<?> type) {
+            return type == String.class;
+        }
+
+        @Override
+        public void write(Object value, Type genericType, OutputStream out) throws IOException {
+            out.write(((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Object read(Class<?> type, Type genericType, InputStream in) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static Customer customer() {
+        Customer customer = new Customer();
+        customer.id = "4711";
+        customer.roles = Arrays.asList("read", "write");
+        return customer;
+    }
+
+    private static Customer roundTrip(Codec codec, Customer customer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(customer, Customer.class, out);
+        return (Customer) codec.read(Customer.class, Customer.class, new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void codecsAreSharedByName() {
+        assertSame(Codecs.get("smile"), Codecs.get(" smile "));
+        assertEquals(Codecs.SMILE, Codecs.get("smile").getMediaType());
+        assertEquals(Codecs.CBOR, Codecs.get("CBOR").getMediaType());
+    }
+
+    @Test
+    public void smileKeepsTheObject() throws IOException {
+        Customer customer = roundTrip(Codecs.get("smile"), customer());
+        assertEquals("4711", customer.id);
+        assertEquals(Arrays.asList("read", "write"), customer.roles);
+    }
+
+    @Test
+    public void cborKeepsTheObject() throws IOException {
+        Customer customer = roundTrip(Codecs.get("cbor"), customer());
+        assertEquals("4711", customer.id);
+        assertEquals(Arrays.asList("read", "write"), customer.roles);
+    }
+
+    @Test
+    public void jaxbAnnotationsAreHonoured() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Codecs.get("cbor").write(customer(), Customer.class, out);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.ISO_8859_1).contains("customerId"));
+    }
+
+    @Test
+    public void codecClassIsCreatedByName() {
+        Codec codec = Codecs.get(TextCodec.class.getName());
+        assertTrue(codec instanceof TextCodec);
+        assertSame(codec, Codecs.get(TextCodec.class.getName()));
+    }
+
+    @Test
+    public void unknownCodecIsNotAvailable() {
+        assertNull(Codecs.get("de.beit.jee.rest.codec.Missing"));
+        assertNull(Codecs.get(String.class.getName()));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.compression;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.beit.jee.rest.TestServer;
+import de.beit.jee.rest.metrics.CompressionMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the {@link CompressionFilter} against a local server.
+ *
+ * @author Markus Pauer
+ */
+public class CompressionFilterTest {
+
+    private static final int THRESHOLD = 1024;
+
+    private final CompressionMetrics metrics = new CompressionMetrics();
+    private TestServer server;
+    private Client client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                InputStream in = exchange.getRequestBody();
+                if ("gzip".equals(requestEncoding)) {
+                    in = new GZIPInputStream(in);
+                }
+                int length = 0;
+                while (in.read() != -1) {
+                    length++;
+                }
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = (requestEncoding + " " + length + " " + repeat('x', 10000)).getBytes("UTF-8");
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (OutputStream out = new GZIPOutputStream(compressed)) {
+                    out.write(body);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    body = compressed.toByteArray();
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        client = new ResteasyClientBuilder().register(new CompressionFilter("gzip", 6, THRESHOLD, metrics)).build();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private String post(int size) {
+        return client.target(server.getUrl()).request().post(Entity.text(repeat('a', size)), String.class);
+    }
+
+    @Test
+    public void largeRequestIsCompressed() {
+        assertEquals("gzip 5000 " + repeat('x', 10000), post(5000));
+        assertEquals(1, metrics.getCompressedRequests());
+        assertEquals(1, metrics.getCompressedResponses());
+    }
+
+    @Test
+    public void smallRequestIsSentAsIs() {
+        assertEquals("null 100 " + repeat('x', 10000), post(100));
+        assertEquals(1, metrics.getUncompressedRequests());
+        assertEquals(1, metrics.getCompressedResponses());
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.compression;
+
+import de.beit.jee.rest.metrics.CompressionMetrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the {@link CompressingOutputStream} and the {@link DecompressingInputStream}.
+ *
+ * @author Markus Pauer
+ */
+public class CompressionStreamTest {
+
+    private final CompressionMetrics metrics = new CompressionMetrics();
+    private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+
+    private static byte[] body(int size) {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < size) {
+            body.append("{\"id\":").append(body.length()).append(",\"name\":\"customer\"},");
+        }
+        return body.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] compress(String encoding, int threshold, byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressingOutputStream compressing = new CompressingOutputStream(out, encoding, 6, threshold, headers, metrics);
+        // written in pieces, like a MessageBodyWriter does
+        for (int off = 0; off < body.length; off += 100) {
+            compressing.write(body, off, Math.min(100, body.length - off));
+        }
+        compressing.finish();
+        return out.toByteArray();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void smallBodyIsSentUncompressed() throws IOException {
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, 500);
+        byte[] body = body(500);
+        assertArrayEquals(body, compress("gzip", 1024, body));
+        assertNull(headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(500, headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertEquals(1, metrics.getUncompressedRequests());
+    }
+
+    @Test
+    public void largeBodyIsGzipped() throws IOException {
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, 100000);
+        byte[] body = body(100000);
+        byte[] compressed = compress("gzip", 1024, body);
+        assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertArrayEquals(body, read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        assertEquals(1, metrics.getCompressedRequests());
+        assertEquals(100000, metrics.getRequestBytes());
+        assertEquals(compressed.length, metrics.getCompressedRequestBytes());
+    }
+
+    @Test
+    public void largeBodyIsDeflated() throws IOException {
+        byte[] body = body(100000);
+        byte[] compressed = compress("deflate", 1024, body);
+        assertEquals("deflate", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(body, read(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void gzipBodyIsDecompressed() throws IOException {
+        byte[] body = body(100000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        assertArrayEquals(body, read(new DecompressingInputStream(new ByteArrayInputStream(compressed.toByteArray()), true, metrics)));
+        assertEquals(1, metrics.getCompressedResponses());
+        assertEquals(100000, metrics.getResponseBytes());
+    }
+
+    @Test
+    public void deflateBodyIsDecompressed() throws IOException {
+        byte[] body = body(100000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(body);
+        }
+        assertArrayEquals(body, read(new DecompressingInputStream(new ByteArrayInputStream(compressed.toByteArray()), false, metrics)));
+    }
+
+    @Test
+    public void roundTripKeepsTheBody() throws IOException {
+        byte[] body = body(50000);
+        byte[] compressed = compress("gzip", 0, body);
+        assertArrayEquals(body, read(new DecompressingInputStream(new ByteArrayInputStream(compressed), true, metrics)));
+    }
+
+    @Test(expected = ZipException.class)
+    public void plainBodyIsNoGzip() throws IOException {
+        read(new DecompressingInputStream(new ByteArrayInputStream(body(100)), true, metrics));
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedBodyIsReported() throws IOException {
+        byte[] compressed = compress("gzip", 0, body(50000));
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        read(new DecompressingInputStream(new ByteArrayInputStream(truncated), true, metrics));
+    }
+
+}
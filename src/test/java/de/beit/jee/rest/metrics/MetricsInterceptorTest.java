@@ -0,0 +1,94 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+import de.beit.jee.rest.TestBeans;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link MetricsInterceptor}.
+ *
+ * @author Markus Pauer
+ */
+public class MetricsInterceptorTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    public interface Customers {
+
+        String getCustomer(String id);
+
+    }
+
+    /**
+     * Answers depending on the id and checks the metrics of the running call.
+     */
+    private class Backend implements Customers {
+
+        @Override
+        public String getCustomer(String id) {
+            assertEquals(1, MetricsInterceptor.current().getInFlight());
+            if ("missing".equals(id)) {
+                throw new NotFoundException();
+            }
+            if ("offline".equals(id)) {
+                throw new ProcessingException("refused");
+            }
+            return id;
+        }
+
+    }
+
+    @After
+    public void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    public void callsAreRecorded() throws Exception {
+        Customers customers = TestBeans.proxy(Customers.class, new Backend(), new MetricsInterceptor(registry));
+        assertEquals("4711", customers.getCustomer("4711"));
+        try {
+            customers.getCustomer("missing");
+            fail("missing customer");
+        } catch (NotFoundException ex) {
+            // counted as client error
+        }
+        try {
+            customers.getCustomer("offline");
+            fail("offline backend");
+        } catch (ProcessingException ex) {
+            // counted as I/O error
+        }
+        MethodMetrics metrics = registry.getMethodMetrics(Customers.class, Customers.class.getMethod("getCustomer", String.class));
+        assertSame(metrics, registry.getMethodMetrics().iterator().next());
+        assertEquals(3, metrics.getCount());
+        assertEquals(1, metrics.getSuccesses());
+        assertEquals(1, metrics.getClientErrors());
+        assertEquals(1, metrics.getIoErrors());
+        assertEquals(0, metrics.getInFlight());
+        assertNull(MetricsInterceptor.current());
+    }
+
+}
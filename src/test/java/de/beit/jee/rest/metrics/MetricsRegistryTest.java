@@ -0,0 +1,101 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link MetricsRegistry}.
+ *
+ * @author Markus Pauer
+ */
+public class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    public interface Customers {
+
+        String getCustomer(String id);
+
+        String getCustomer(long id, boolean details);
+
+    }
+
+    @After
+    public void tearDown() {
+        registry.close();
+    }
+
+    private static ObjectName objectName(String method) throws Exception {
+        return new ObjectName("de.beit.jee.rest:type=Endpoint,interface=" + ObjectName.quote(Customers.class.getName())
+                + ",method=" + ObjectName.quote(method));
+    }
+
+    @Test
+    public void signatureContainsTheParameterTypes() throws Exception {
+        assertEquals("getCustomer(String)", MethodMetrics.signature(Customers.class.getMethod("getCustomer", String.class)));
+        assertEquals("getCustomer(long,boolean)",
+                MethodMetrics.signature(Customers.class.getMethod("getCustomer", long.class, boolean.class)));
+    }
+
+    @Test
+    public void overloadedMethodsHaveTheirOwnMetrics() throws Exception {
+        Method byName = Customers.class.getMethod("getCustomer", String.class);
+        Method byNumber = Customers.class.getMethod("getCustomer", long.class, boolean.class);
+        MethodMetrics metrics = registry.getMethodMetrics(Customers.class, byName);
+        assertSame(metrics, registry.getMethodMetrics(Customers.class, byName));
+        assertNotSame(metrics, registry.getMethodMetrics(Customers.class, byNumber));
+        assertEquals(2, registry.getMethodMetrics().size());
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName("getCustomer(String)")));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName("getCustomer(long,boolean)")));
+    }
+
+    @Test
+    public void closeUnregistersTheMBeans() throws Exception {
+        registry.getMethodMetrics(Customers.class, Customers.class.getMethod("getCustomer", String.class));
+        registry.close();
+        assertTrue(registry.getMethodMetrics().isEmpty());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName("getCustomer(String)")));
+    }
+
+    @Test
+    public void outcomesAreCountedByStatusClass() throws Exception {
+        MethodMetrics metrics = registry.getMethodMetrics(Customers.class, Customers.class.getMethod("getCustomer", String.class));
+        metrics.end(metrics.begin(), 200);
+        metrics.end(metrics.begin(), 404);
+        metrics.end(metrics.begin(), 503);
+        metrics.end(metrics.begin(), 0);
+        metrics.begin();
+        metrics.cancelled();
+        assertEquals(4, metrics.getCount());
+        assertEquals(1, metrics.getSuccesses());
+        assertEquals(1, metrics.getClientErrors());
+        assertEquals(1, metrics.getServerErrors());
+        assertEquals(1, metrics.getIoErrors());
+        assertEquals(0, metrics.getInFlight());
+    }
+
+}
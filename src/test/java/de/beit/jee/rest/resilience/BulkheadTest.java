@@ -0,0 +1,126 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.TestBeans;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link Bulkhead}.
+ *
+ * @author Markus Pauer
+ */
+public class BulkheadTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Thread blocked;
+
+    /**
+     * An endpoint whose first call blocks until it is released.
+     */
+    private final TestEndpoint.Scripted target = new TestEndpoint.Scripted() {
+        @Override
+        public Object get() {
+            if (started.getCount() > 0) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "ok";
+        }
+    };
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        if (blocked != null) {
+            blocked.join(5000);
+        }
+    }
+
+    private void block(final TestEndpoint endpoint) throws InterruptedException {
+        blocked = new Thread() {
+            @Override
+            public void run() {
+                endpoint.get();
+            }
+        };
+        blocked.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fullBulkheadRejectsCalls() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, bulkhead);
+        block(endpoint);
+        assertEquals(1, bulkhead.getActiveCalls());
+        try {
+            endpoint.get();
+            fail("call of a full bulkhead");
+        } catch (CallRejectedException ex) {
+            // rejected without waiting
+        }
+        release.countDown();
+        blocked.join(5000);
+        assertEquals(0, bulkhead.getActiveCalls());
+        assertEquals("ok", endpoint.get());
+    }
+
+    @Test
+    public void callsWaitForAFreePermit() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 5000);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, bulkhead);
+        block(endpoint);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }
+        }.start();
+        assertEquals("ok", endpoint.get());
+    }
+
+    @Test
+    public void failedCallsReleaseThePermit() {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class,
+                new TestEndpoint.Scripted().then(new IllegalStateException("failed")), bulkhead);
+        try {
+            endpoint.get();
+            fail("failed call");
+        } catch (IllegalStateException ex) {
+            assertEquals(0, bulkhead.getActiveCalls());
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.TestBeans;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the state changes of the {@link CircuitBreaker}.
+ *
+ * @author Markus Pauer
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_DURATION = 100;
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 50, OPEN_DURATION);
+
+    private static void call(TestEndpoint endpoint) {
+        try {
+            endpoint.get();
+        } catch (ProcessingException | NotFoundException ex) {
+            // the outcome is recorded by the breaker
+        }
+    }
+
+    private void open(TestEndpoint.Scripted target) {
+        target.then("ok", "ok", new ProcessingException("refused"));
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, breaker);
+        for (int i = 0; i < 4; i++) {
+            call(endpoint);
+        }
+    }
+
+    @Test
+    public void breakerOpensAtTheFailureRate() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted();
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, breaker);
+        target.then("ok", "ok", "ok", new ProcessingException("refused"));
+        for (int i = 0; i < 4; i++) {
+            call(endpoint);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(endpoint);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            endpoint.get();
+            fail("call of an open breaker");
+        } catch (CallRejectedException ex) {
+            assertEquals(5, target.getCalls());
+        }
+    }
+
+    @Test
+    public void fewCallsDoNotOpenTheBreaker() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(new ProcessingException("refused"));
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, breaker);
+        for (int i = 0; i < 3; i++) {
+            call(endpoint);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void clientErrorsAreNoFailures() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(new NotFoundException());
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, breaker);
+        for (int i = 0; i < 8; i++) {
+            call(endpoint);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void serverErrorResponsesAreFailures() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(Response.status(503).build());
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, breaker);
+        for (int i = 0; i < 4; i++) {
+            call(endpoint);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void successfulTrialClosesTheBreaker() throws Exception {
+        open(new TestEndpoint.Scripted());
+        Thread.sleep(OPEN_DURATION + 50);
+        TestBeans.proxy(TestEndpoint.class, new TestEndpoint.Scripted().then("ok"), breaker).get();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedTrialOpensTheBreakerAgain() throws Exception {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted();
+        open(target);
+        Thread.sleep(OPEN_DURATION + 50);
+        call(TestBeans.proxy(TestEndpoint.class, target, breaker));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenBreakerLetsOnlyOneTrialThrough() throws Exception {
+        open(new TestEndpoint.Scripted());
+        Thread.sleep(OPEN_DURATION + 50);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, new TestEndpoint.Scripted() {
+            @Override
+            public Object get() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "ok";
+            }
+        }, breaker);
+        Thread trial = new Thread() {
+            @Override
+            public void run() {
+                endpoint.get();
+            }
+        };
+        trial.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        try {
+            endpoint.get();
+            fail("second trial call");
+        } catch (CallRejectedException ex) {
+            // only one trial at a time
+        } finally {
+            release.countDown();
+            trial.join(5000);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void trialRejectedDownstreamLetsTheNextCallBeTheTrial() throws Exception {
+        open(new TestEndpoint.Scripted());
+        final CountDownLatch occupied = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted() {
+            @Override
+            public Object get() {
+                occupied.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "ok";
+            }
+        };
+        Bulkhead bulkhead = new Bulkhead("test", 1, 300);
+        final TestEndpoint behindBulkhead = TestBeans.proxy(TestEndpoint.class, target, bulkhead);
+        final TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, breaker, bulkhead);
+        Thread occupant = new Thread() {
+            @Override
+            public void run() {
+                behindBulkhead.get();
+            }
+        };
+        occupant.start();
+        assertTrue(occupied.await(5, TimeUnit.SECONDS));
+        Thread.sleep(OPEN_DURATION + 50);
+        final Exception[] trialFailure = new Exception[1];
+        Thread trial = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    endpoint.get();
+                } catch (CallRejectedException ex) {
+                    trialFailure[0] = ex;
+                }
+            }
+        };
+        trial.start();
+        for (int i = 0; i < 100 && breaker.getState() != CircuitBreaker.State.HALF_OPEN; i++) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        try {
+            endpoint.get();
+            fail("call next to the trial call");
+        } catch (CallRejectedException ex) {
+            assertTrue(ex.getMessage().startsWith("Circuit breaker"));
+        }
+        trial.join(5000);
+        assertTrue(trialFailure[0].getMessage().startsWith("Bulkhead"));
+        release.countDown();
+        occupant.join(5000);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals("ok", endpoint.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void trialEndingWithAnErrorLetsTheNextCallBeTheTrial() throws Exception {
+        open(new TestEndpoint.Scripted());
+        Thread.sleep(OPEN_DURATION + 50);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, new TestEndpoint.Scripted() {
+            private boolean failed;
+
+            @Override
+            public synchronized Object get() {
+                if (!failed) {
+                    failed = true;
+                    throw new AssertionError("broken");
+                }
+                return "ok";
+            }
+        }, breaker);
+        try {
+            endpoint.get();
+            fail("trial call with an Error");
+        } catch (AssertionError ex) {
+            assertEquals("broken", ex.getMessage());
+        }
+        assertEquals("ok", endpoint.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.TestBeans;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.Response;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link ConcurrencyLimiter}.
+ *
+ * @author Markus Pauer
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Thread blocked;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        if (blocked != null) {
+            blocked.join(5000);
+        }
+    }
+
+    /**
+     * Start a call that holds its permit until it is released.
+     */
+    private TestEndpoint block(ConcurrencyLimiter limiter) throws InterruptedException {
+        final TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, new TestEndpoint.Scripted() {
+            @Override
+            public Object get() {
+                if (started.getCount() > 0) {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return "ok";
+            }
+        }, limiter);
+        blocked = new Thread() {
+            @Override
+            public void run() {
+                endpoint.get();
+            }
+        };
+        blocked.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return endpoint;
+    }
+
+    @Test
+    public void aimdGrowsWhileTheLimitIsUsed() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.AIMD, 4, 1, 10, 0);
+        limiter.update(MILLI, 2, false);
+        assertEquals(5, limiter.getLimit());
+        limiter.update(MILLI, 1, false);
+        assertEquals(5, limiter.getLimit());
+        for (int i = 0; i < 10; i++) {
+            limiter.update(MILLI, 10, false);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void aimdShrinksOnOverload() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.AIMD, 20, 2, 200, 0);
+        limiter.update(MILLI, 1, true);
+        assertEquals(18, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limiter.update(MILLI, 1, true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void vegasShrinksWhenTheBackendQueues() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.VEGAS, 100, 1, 200, 0);
+        limiter.update(MILLI, 100, false);
+        int limit = limiter.getLimit();
+        limiter.update(10 * MILLI, 100, false);
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void gradientShrinksWhenTheRoundTripTimeRises() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.GRADIENT, 20, 1, 200, 0);
+        for (int i = 0; i < 5; i++) {
+            limiter.update(MILLI, 20, false);
+        }
+        assertTrue(limiter.getLimit() > 20);
+        for (int i = 0; i < 20; i++) {
+            limiter.update(100 * MILLI, 20, false);
+        }
+        assertTrue(limiter.getLimit() < 20);
+    }
+
+    @Test
+    public void overloadedResponsesShrinkTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.AIMD, 20, 1, 200, 0);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class,
+                new TestEndpoint.Scripted().then(Response.status(429).build(), new ServiceUnavailableException()), limiter);
+        endpoint.get();
+        assertEquals(18, limiter.getLimit());
+        try {
+            endpoint.get();
+            fail("unavailable backend");
+        } catch (ServiceUnavailableException ex) {
+            assertEquals(16, limiter.getLimit());
+        }
+        assertEquals(0, limiter.getActiveCalls());
+    }
+
+    @Test
+    public void callsAboveTheLimitAreRejected() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.AIMD, 1, 1, 1, 0);
+        TestEndpoint endpoint = block(limiter);
+        try {
+            endpoint.get();
+            fail("call above the limit");
+        } catch (CallRejectedException ex) {
+            assertEquals(1, limiter.getRejectedCalls());
+        }
+    }
+
+    @Test
+    public void callsWaitForARunningCall() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", ConcurrencyLimiter.Algorithm.AIMD, 1, 1, 1, 5000);
+        TestEndpoint endpoint = block(limiter);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }
+        }.start();
+        assertEquals("ok", endpoint.get());
+        assertEquals(0, limiter.getRejectedCalls());
+    }
+
+}
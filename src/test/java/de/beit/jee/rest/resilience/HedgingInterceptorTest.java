@@ -0,0 +1,180 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.TestBeans;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.ProcessingException;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link HedgingInterceptor}.
+ *
+ * @author Markus Pauer
+ */
+public class HedgingInterceptorTest {
+
+    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(1);
+    private final ExecutorService executor = new ThreadPoolExecutor(0, 2, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private HedgingInterceptor hedging(int budgetPercent) {
+        return new HedgingInterceptor("test", 10, 0, budgetPercent, 5000, timer, executor);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An endpoint whose attempts answer after the given number of milliseconds each, a negative time fails.
+     */
+    private static class Attempts extends TestEndpoint.Scripted {
+
+        private final long[] millis;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile Thread firstThread;
+
+        Attempts(long... millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public Object get() {
+            int attempt = attempts.getAndIncrement();
+            if (attempt == 0) {
+                firstThread = Thread.currentThread();
+            }
+            long time = millis[Math.min(attempt, millis.length - 1)];
+            sleep(Math.abs(time));
+            if (time < 0) {
+                throw new ProcessingException("attempt " + attempt + " failed");
+            }
+            return "attempt " + attempt;
+        }
+
+        @Override
+        public Object post() {
+            return get();
+        }
+
+    }
+
+    @Test
+    public void secondAttemptWinsOverASlowFirst() {
+        final AtomicInteger cancelled = new AtomicInteger();
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted() {
+            private final AtomicInteger attempts = new AtomicInteger();
+
+            @Override
+            public Object get() {
+                if (attempts.getAndIncrement() > 0) {
+                    return "fast";
+                }
+                // the first attempt hangs until it is aborted, like a request of the HTTP engine
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!HedgingInterceptor.isCancelled() && System.currentTimeMillis() < deadline) {
+                    sleep(5);
+                }
+                if (HedgingInterceptor.isCancelled()) {
+                    cancelled.incrementAndGet();
+                }
+                throw new ProcessingException("aborted");
+            }
+        };
+        HedgingInterceptor hedging = hedging(100);
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 1, 50, 60000);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, hedging, breaker);
+        long start = System.currentTimeMillis();
+        assertEquals("fast", endpoint.get());
+        assertTrue(System.currentTimeMillis() - start < 2500);
+        assertEquals(1, cancelled.get());
+        assertEquals(1, hedging.getHedges());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(!HedgingInterceptor.isCancelled());
+    }
+
+    @Test
+    public void firstAttemptRunsInTheCaller() {
+        Attempts target = new Attempts(0);
+        assertEquals("attempt 0", TestBeans.proxy(TestEndpoint.class, target, hedging(100)).get());
+        assertSame(Thread.currentThread(), target.firstThread);
+        assertEquals(1, target.attempts.get());
+    }
+
+    @Test
+    public void failedFirstAttemptWaitsForTheSecond() {
+        Attempts target = new Attempts(-50, 100);
+        assertEquals("attempt 1", TestBeans.proxy(TestEndpoint.class, target, hedging(100)).get());
+    }
+
+    @Test(expected = ProcessingException.class)
+    public void failureIsThrownIfBothAttemptsFail() {
+        TestBeans.proxy(TestEndpoint.class, new Attempts(-50, -50), hedging(100)).get();
+    }
+
+    @Test
+    public void budgetLimitsTheHedges() {
+        HedgingInterceptor hedging = hedging(50);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, new Attempts(60), hedging);
+        for (int i = 0; i < 4; i++) {
+            endpoint.get();
+        }
+        assertEquals(2, hedging.getHedges());
+    }
+
+    @Test
+    public void percentileOfTheFirstWindowReplacesTheFixedDelay() {
+        HedgingInterceptor hedging = new HedgingInterceptor("test", 60000, 50, 0, 5000, timer, executor);
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, new Attempts(0), hedging);
+        for (int i = 0; i < 99; i++) {
+            endpoint.get();
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toMicros(60000), hedging.getDelay());
+        endpoint.get();
+        assertTrue(hedging.getDelay() < TimeUnit.MILLISECONDS.toMicros(1000));
+    }
+
+    @Test
+    public void postIsNotHedged() {
+        Attempts target = new Attempts(60);
+        HedgingInterceptor hedging = hedging(100);
+        assertEquals("attempt 0", TestBeans.proxy(TestEndpoint.class, target, hedging).post());
+        assertEquals(1, target.attempts.get());
+        assertEquals(0, hedging.getHedges());
+    }
+
+}
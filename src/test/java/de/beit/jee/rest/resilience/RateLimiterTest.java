@@ -0,0 +1,73 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.TestBeans;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link RateLimiter}.
+ *
+ * @author Markus Pauer
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void burstIsAvailableAtOnce() {
+        RateLimiter limiter = new RateLimiter("test", 1, 3, 0);
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(-1, limiter.reserve());
+    }
+
+    @Test
+    public void tokensAreRefilled() throws Exception {
+        RateLimiter limiter = new RateLimiter("test", 100, 1, 0);
+        assertEquals(0, limiter.reserve());
+        assertEquals(-1, limiter.reserve());
+        Thread.sleep(20);
+        assertEquals(0, limiter.reserve());
+    }
+
+    @Test
+    public void callsWaitForTheirToken() {
+        RateLimiter limiter = new RateLimiter("test", 10, 1, 1000);
+        assertEquals(0, limiter.reserve());
+        long wait = limiter.reserve();
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(limiter.reserve() > wait);
+    }
+
+    @Test
+    public void callsWithoutTokenAreRejected() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then("ok");
+        TestEndpoint endpoint = TestBeans.proxy(TestEndpoint.class, target, new RateLimiter("test", 1, 1, 0));
+        assertEquals("ok", endpoint.get());
+        try {
+            endpoint.get();
+            fail("call above the rate");
+        } catch (CallRejectedException ex) {
+            assertEquals(1, target.getCalls());
+        }
+    }
+
+}
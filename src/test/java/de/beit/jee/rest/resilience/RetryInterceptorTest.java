@@ -0,0 +1,101 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import de.beit.jee.rest.TestBeans;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.Response;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link RetryInterceptor}.
+ *
+ * @author Markus Pauer
+ */
+public class RetryInterceptorTest {
+
+    private static TestEndpoint proxy(TestEndpoint.Scripted target, long initialBackoff, long maxBackoff) {
+        return TestBeans.proxy(TestEndpoint.class, target, new RetryInterceptor(3, initialBackoff, maxBackoff));
+    }
+
+    @Test
+    public void idempotentCallsAreRepeated() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted()
+                .then(new ProcessingException("refused"), new ServiceUnavailableException(), "ok");
+        assertEquals("ok", proxy(target, 1, 5).get());
+        assertEquals(3, target.getCalls());
+    }
+
+    @Test
+    public void lastFailureIsThrownAfterMaxAttempts() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(new ProcessingException("refused"));
+        try {
+            proxy(target, 1, 5).get();
+            fail("call without success");
+        } catch (ProcessingException ex) {
+            assertEquals(3, target.getCalls());
+        }
+    }
+
+    @Test
+    public void postIsNotRepeated() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(new ProcessingException("refused"), "ok");
+        try {
+            proxy(target, 1, 5).post();
+            fail("repeated POST");
+        } catch (ProcessingException ex) {
+            assertEquals(1, target.getCalls());
+        }
+    }
+
+    @Test
+    public void internalServerErrorIsNotRepeated() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(new InternalServerErrorException(), "ok");
+        try {
+            proxy(target, 1, 5).get();
+            fail("repeated server error");
+        } catch (InternalServerErrorException ex) {
+            assertEquals(1, target.getCalls());
+        }
+    }
+
+    @Test
+    public void retriableResponsesAreRepeated() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted().then(Response.status(503).build(), "ok");
+        assertEquals("ok", proxy(target, 1, 5).get());
+        assertEquals(2, target.getCalls());
+
+        TestEndpoint.Scripted unavailable = new TestEndpoint.Scripted().then(Response.status(504).build());
+        assertEquals(504, ((Response) proxy(unavailable, 1, 5).get()).getStatus());
+        assertEquals(3, unavailable.getCalls());
+    }
+
+    @Test
+    public void backoffIsLimited() {
+        TestEndpoint.Scripted target = new TestEndpoint.Scripted()
+                .then(new ProcessingException("refused"), new ProcessingException("refused"), "ok");
+        long start = System.currentTimeMillis();
+        assertEquals("ok", proxy(target, 60000, 20).get());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+}
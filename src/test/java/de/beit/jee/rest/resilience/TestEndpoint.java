@@ -0,0 +1,86 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.resilience;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+/**
+ * An endpoint for the tests of the Interceptors, implemented by {@link Scripted}.
+ *
+ * @author Markus Pauer
+ */
+@Path("/")
+public interface TestEndpoint {
+
+    @GET
+    Object get();
+
+    @POST
+    Object post();
+
+    /**
+     * Answers with the scripted outcomes in order and repeats the last one.
+     */
+    class Scripted implements TestEndpoint {
+
+        private final Deque<Object> outcomes = new ArrayDeque<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        /**
+         * Add outcomes: an Exception is thrown, any other object is returned.
+         *
+         * @param results - outcomes of the next calls
+         * @return this endpoint
+         */
+        synchronized Scripted then(Object... results) {
+            for (Object result : results) {
+                outcomes.add(result);
+            }
+            return this;
+        }
+
+        int getCalls() {
+            return calls.get();
+        }
+
+        @Override
+        public Object get() {
+            return answer();
+        }
+
+        @Override
+        public Object post() {
+            return answer();
+        }
+
+        private synchronized Object answer() {
+            calls.incrementAndGet();
+            Object outcome = outcomes.size() > 1 ? outcomes.poll() : outcomes.peek();
+            if (outcome instanceof RuntimeException) {
+                throw (RuntimeException) outcome;
+            }
+            return outcome;
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright BEIT GmbH and/or licensed to BEIT GmbH
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. BEIT licenses this file to you under the Apache License,
+ * Version 2.0; you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.beit.jee.rest.stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import de.beit.jee.config.TestConfiguration;
+import de.beit.jee.rest.AsyncExecutor;
+import de.beit.jee.rest.ClientRegistry;
+import de.beit.jee.rest.TestBeans;
+import de.beit.jee.rest.TestServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of endpoints that stream JSON arrays as {@link Iterator}s against a local server.
+ *
+ * @author Markus Pauer
+ */
+public class StreamingInterceptorTest {
+
+    private static final int SIZE = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestServer server;
+    private AsyncExecutor executor;
+    private ClientRegistry clientRegistry;
+    private Customers customers;
+
+    public static class Customer {
+
+        public int id;
+
+        public Customer() {
+        }
+
+        public Customer(int id) {
+            this.id = id;
+        }
+
+    }
+
+    @Path("/")
+    public interface Customers {
+
+        @GET
+        @Path("customers")
+        @Produces(MediaType.APPLICATION_JSON)
+        Iterator<Customer> exportCustomers();
+
+        @GET
+        @Path("missing")
+        @Produces(MediaType.APPLICATION_JSON)
+        Iterator<Customer> exportMissing();
+
+        @POST
+        @Path("customers")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.TEXT_PLAIN)
+        String importCustomers(Iterator<Customer> customers);
+
+    }
+
+    /**
+     * Produces the Customers while they are sent.
+     */
+    private static final class Producer implements Iterator<Customer> {
+
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+            return next < SIZE;
+        }
+
+        @Override
+        public Customer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new Customer(next++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer(new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.endsWith("/missing")) {
+                    TestServer.respond(exchange, 404, "text/plain", "");
+                } else if ("POST".equals(exchange.getRequestMethod())) {
+                    String body = read(exchange.getRequestBody());
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestHeaders().getFirst("Transfer-Encoding")
+                            + " " + (body.length() - body.replace("\"id\"", "").length()) / 4);
+                } else {
+                    StringBuilder array = new StringBuilder("[");
+                    for (int i = 0; i < SIZE; i++) {
+                        array.append(i > 0 ? "," : "").append("{\"id\":").append(i).append('}');
+                    }
+                    TestServer.respond(exchange, 200, "application/json", array.append(']').toString());
+                }
+            }
+        });
+        executor = TestBeans.asyncExecutor(TestConfiguration.create(folder.getRoot(), ""));
+        clientRegistry = TestBeans.clientRegistry(TestConfiguration.create(folder.newFolder(),
+                Customers.class.getName() + ".endpoint = " + server.getUrl() + "\n"
+                + Customers.class.getName() + ".pool.maxPerRoute = 1\n"
+                + Customers.class.getName() + ".pool.checkoutTimeout = 2000\n"
+                + "restclient.metrics.enabled = false\n"), executor);
+        customers = TestBeans.restClient(clientRegistry, executor).endpoint(Customers.class);
+    }
+
+    @After
+    public void tearDown() {
+        clientRegistry.close();
+        executor.shutdown();
+        server.close();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            text.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void arrayIsReadElementByElement() {
+        Iterator<Customer> iterator = customers.exportCustomers();
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertEquals(count++, iterator.next().id);
+        }
+        assertEquals(SIZE, count);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void closedIteratorReleasesTheConnection() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Iterator<Customer> iterator = customers.exportCustomers();
+            assertEquals(0, iterator.next().id);
+            ((Closeable) iterator).close();
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void errorStatusIsThrown() {
+        customers.exportMissing();
+    }
+
+    @Test
+    public void iteratorBodyIsSentChunked() {
+        assertEquals("chunked " + SIZE, customers.importCustomers(new Producer()));
+        assertTrue(customers.exportCustomers().hasNext());
+    }
+
+}